@@ -0,0 +1,54 @@
+package com.kern.Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.kern.Logic.Position;
+
+/**
+ * Measures check detection: whether the king of the side to move is attacked,
+ * and the attack test of every square the way king moves are validated.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2)
+@State(Scope.Thread)
+public class CheckDetectionBenchmark {
+
+    @Param({ "start", "kiwipete", "endgame", "promotion", "tricky", "middlegame" })
+    public String position;
+
+    private Position board;
+
+    @Setup
+    public void setup() {
+        board = TestPositions.load(TestPositions.byName(position));
+    }
+
+    @Benchmark
+    public boolean inCheck() {
+        return board.isAttacked(board.kingSquare(board.sideToMove), 1 - board.sideToMove);
+    }
+
+    @Benchmark
+    public void attackedSquares(Blackhole blackhole) {
+        int them = 1 - board.sideToMove;
+        for (int square = 0; square < 64; square++) {
+            blackhole.consume(board.isAttacked(square, them));
+        }
+    }
+}
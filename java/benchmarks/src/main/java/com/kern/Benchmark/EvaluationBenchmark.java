@@ -0,0 +1,106 @@
+package com.kern.Benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kern.Engine.Evaluation;
+import com.kern.Engine.Network;
+import com.kern.Engine.NnueEvaluator;
+import com.kern.Engine.PawnTable;
+import com.kern.Logic.MoveGenerator;
+import com.kern.Logic.Position;
+
+/**
+ * Measures the evaluations as the search uses them: making and taking back
+ * every legal move and evaluating the position in between, with the
+ * piece-square evaluation computing its pawn terms, with them cached in a
+ * pawn table and with a network of random weights. The forks add
+ * the vector module, so the network runs its SIMD kernels.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+@State(Scope.Thread)
+public class EvaluationBenchmark {
+    private static final int HIDDEN = 256;
+
+    @Param({ "start", "kiwipete", "endgame", "promotion", "tricky", "middlegame" })
+    public String position;
+
+    private Position board;
+    private NnueEvaluator nnue;
+    private final PawnTable pawns = new PawnTable();
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private int count;
+
+    @Setup
+    public void setup() {
+        board = TestPositions.load(TestPositions.byName(position));
+        count = MoveGenerator.generate(board, moves);
+
+        Random random = new Random(1);
+        short[] inputWeights = new short[Network.INPUTS * HIDDEN];
+        short[] hiddenBiases = new short[HIDDEN];
+        short[] outputWeights = new short[2 * HIDDEN];
+        for (int i = 0; i < inputWeights.length; i++) {
+            inputWeights[i] = (short) (random.nextInt(41) - 20);
+        }
+        for (int i = 0; i < HIDDEN; i++) {
+            hiddenBiases[i] = (short) random.nextInt(200);
+        }
+        for (int i = 0; i < outputWeights.length; i++) {
+            outputWeights[i] = (short) (random.nextInt(129) - 64);
+        }
+        nnue = new NnueEvaluator(new Network(inputWeights, hiddenBiases, outputWeights, 0));
+        nnue.refresh(board);
+    }
+
+    @Benchmark
+    public int pieceSquare() {
+        int sum = 0;
+        for (int i = 0; i < count; i++) {
+            board.makeMove(moves[i]);
+            sum += Evaluation.evaluate(board);
+            board.unmakeMove(moves[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int pawnTable() {
+        int sum = 0;
+        for (int i = 0; i < count; i++) {
+            board.makeMove(moves[i]);
+            sum += Evaluation.evaluate(board, pawns);
+            board.unmakeMove(moves[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int network() {
+        int sum = 0;
+        for (int i = 0; i < count; i++) {
+            nnue.push(board, moves[i]);
+            board.makeMove(moves[i]);
+            sum += nnue.evaluate(board);
+            board.unmakeMove(moves[i]);
+            nnue.pop();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,92 @@
+package com.kern.Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kern.Logic.MoveGenerator;
+import com.kern.Logic.Position;
+
+/**
+ * Measures full-position move generation: a single call of
+ * {@link MoveGenerator#generate(Position, int[])} and a depth 3 perft that
+ * also exercises make and unmake. The staged search generates the captures
+ * alone first and checks remembered moves one piece at a time, so both are
+ * measured as well.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2)
+@State(Scope.Thread)
+public class MoveGeneratorBenchmark {
+
+    @Param({ "start", "kiwipete", "endgame", "promotion", "tricky", "middlegame" })
+    public String position;
+
+    private Position board;
+    private final int[][] moves = new int[8][MoveGenerator.MAX_MOVES];
+    private final int[] legal = new int[MoveGenerator.MAX_MOVES];
+    private int legalCount;
+
+    @Setup
+    public void setup() {
+        board = TestPositions.load(TestPositions.byName(position));
+        legalCount = MoveGenerator.generate(board, legal);
+    }
+
+    @Benchmark
+    public int generate() {
+        return MoveGenerator.generate(board, moves[0]);
+    }
+
+    @Benchmark
+    public int captures() {
+        return MoveGenerator.generate(board, moves[0], 0, MoveGenerator.CAPTURES, ~0L);
+    }
+
+    // Checks every legal move, generating only the moves of its piece each time
+    @Benchmark
+    public int contains() {
+        int found = 0;
+        for (int i = 0; i < legalCount; i++) {
+            if (MoveGenerator.contains(board, legal[i], moves[0])) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long perft3() {
+        return perft(3);
+    }
+
+    private long perft(int depth) {
+        int[] list = moves[depth];
+        int count = MoveGenerator.generate(board, list);
+        if (depth == 1) {
+            return count;
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            board.makeMove(list[i]);
+            nodes += perft(depth - 1);
+            board.unmakeMove(list[i]);
+        }
+        return nodes;
+    }
+}
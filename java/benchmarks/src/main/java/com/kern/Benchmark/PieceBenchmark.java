@@ -0,0 +1,58 @@
+package com.kern.Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.kern.Logic.Position;
+import com.kern.Logic.Type;
+import com.kern.Piece.Piece;
+
+/**
+ * Measures {@code Piece.canMove} of one piece over all 64 target squares, the
+ * way the GUI probes squares while a piece is dragged.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class PieceBenchmark {
+
+    @Param({ "PAWN", "KNIGHT", "BISHOP", "ROOK", "QUEEN", "KING" })
+    public Type type;
+
+    @Param({ "kiwipete", "middlegame" })
+    public String position;
+
+    private Position board;
+    private Piece piece;
+
+    @Setup
+    public void setup() {
+        board = TestPositions.load(TestPositions.byName(position));
+        long candidates = board.pieces(Position.WHITE, type.ordinal());
+        piece = TestPositions.pieceAt(board, Long.numberOfTrailingZeros(candidates));
+    }
+
+    @Benchmark
+    public void canMoveAllTargets(Blackhole blackhole) {
+        for (int row = 0; row < 8; row++) {
+            for (int column = 0; column < 8; column++) {
+                blackhole.consume(piece.canMove(board, column, row));
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.kern.Benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kern.GUI.GamePanel;
+
+/**
+ * Measures one frame of {@code GamePanel.paintComponent} rendered headless
+ * into a {@link BufferedImage} of the window size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class RenderBenchmark {
+
+    private GamePanel gamePanel;
+    private BufferedImage image;
+    private Graphics2D g2d;
+
+    @Setup
+    public void setup() {
+        gamePanel = new GamePanel();
+        gamePanel.setSize(GamePanel.WINDOW_WIDTH, GamePanel.WINDOW_HEIGHT);
+        image = new BufferedImage(GamePanel.WINDOW_WIDTH, GamePanel.WINDOW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        g2d = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2d.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paintFrame() {
+        gamePanel.paintComponent(g2d);
+        return image;
+    }
+}
@@ -0,0 +1,80 @@
+package com.kern.Benchmark;
+
+import com.kern.Logic.Position;
+import com.kern.Notation.Fen;
+import com.kern.Piece.Bishop;
+import com.kern.Piece.King;
+import com.kern.Piece.Knight;
+import com.kern.Piece.Pawn;
+import com.kern.Piece.Piece;
+import com.kern.Piece.Queen;
+import com.kern.Piece.Rook;
+
+/**
+ * The standard test positions shared by the benchmarks.
+ *
+ * <p>
+ * The positions are the usual move generator test set: the start position,
+ * "Kiwipete" and perft positions 3 to 6. Every benchmark selects them by name
+ * through a {@code @Param}, so results stay comparable between commits.
+ * </p>
+ */
+public final class TestPositions {
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    public static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    public static final String ENDGAME = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+    public static final String PROMOTION = "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
+    public static final String TRICKY = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8";
+    public static final String MIDDLEGAME = "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10";
+
+    private TestPositions() {
+    }
+
+    public static String byName(String name) {
+        switch (name) {
+            case "start":
+                return START;
+            case "kiwipete":
+                return KIWIPETE;
+            case "endgame":
+                return ENDGAME;
+            case "promotion":
+                return PROMOTION;
+            case "tricky":
+                return TRICKY;
+            case "middlegame":
+                return MIDDLEGAME;
+            default:
+                throw new IllegalArgumentException("Unknown test position: " + name);
+        }
+    }
+
+    public static Position load(String fen) {
+        return Fen.parse(fen);
+    }
+
+    /**
+     * Returns the GUI piece standing on the square of the given position.
+     */
+    public static Piece pieceAt(Position position, int square) {
+        int code = position.pieceAt(square);
+        return newPiece(Position.color(code), Position.type(code), Position.column(square), Position.row(square));
+    }
+
+    private static Piece newPiece(int color, int type, int column, int row) {
+        switch (type) {
+            case Position.PAWN:
+                return new Pawn(color, column, row);
+            case Position.KNIGHT:
+                return new Knight(color, column, row);
+            case Position.BISHOP:
+                return new Bishop(color, column, row);
+            case Position.ROOK:
+                return new Rook(color, column, row);
+            case Position.QUEEN:
+                return new Queen(color, column, row);
+            default:
+                return new King(color, column, row);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.kern.Engine;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.kern.Logic.Move;
+import com.kern.Logic.Position;
+import com.kern.Notation.PolyglotBook;
+
+/**
+ * The Engine class runs the {@link Search} on background threads.
+ *
+ * <p>
+ * {@link #think(Position, SearchLimits, Consumer)} takes a snapshot of the
+ * position on the calling thread and returns at once; the result is handed to
+ * the callback on the engine thread when the search ends. This keeps the game
+ * loop of the GUI free while the computer thinks.
+ * </p>
+ *
+ * <p>
+ * With more than one thread the engine searches in "lazy SMP" fashion: every
+ * helper thread searches the same root with its own {@link Search}, sharing
+ * only the lock-free {@link TranspositionTable}, the stop signal and the
+ * count of nodes the node limit applies to. The
+ * helpers never report anything; they speed up the main thread by filling the
+ * table, and the main thread's result is the one returned, with the nodes of
+ * all threads counted.
+ * </p>
+ *
+ * <p>
+ * With an opening book set, a position found in the book is answered with a
+ * book move at once, without searching. With endgame tables set, the
+ * searches score the positions they hold exactly. With a network set, every
+ * search thread evaluates with its own {@link NnueEvaluator}.
+ * </p>
+ *
+ * <p>
+ * A search without a time limit, such as pondering on the opponent's time,
+ * can be given one once it runs with {@link #stopAfter(long)}.
+ * </p>
+ */
+public class Engine {
+    public static final int DEFAULT_HASH_MB = 64;
+
+    private final TranspositionTable table;
+    private final ExecutorService worker;
+    private final ScheduledExecutorService timer;
+    private ExecutorService helpers;
+    private Search[] searches;
+    private volatile PolyglotBook book;
+    private Tablebase tablebase;
+    private Network network;
+
+    private volatile AtomicBoolean stopSignal = new AtomicBoolean();
+    private volatile boolean thinking;
+    private volatile SearchResult lastResult;
+    private volatile Consumer<SearchResult> listener;
+
+    public Engine() {
+        this(DEFAULT_HASH_MB, 1);
+    }
+
+    public Engine(int hashMegabytes, int threads) {
+        table = new TranspositionTable(hashMegabytes);
+        worker = Executors.newSingleThreadExecutor(runnable -> newThread(runnable, "Engine"));
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> newThread(runnable, "Engine timer"));
+        setThreads(threads);
+    }
+
+    private static Thread newThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Sets the number of search threads, the main thread included. Must not be
+     * called while the engine is thinking.
+     */
+    public void setThreads(int threads) {
+        threads = Math.max(1, threads);
+
+        if (helpers != null) {
+            helpers.shutdown();
+            helpers = null;
+        }
+        if (threads > 1) {
+            int[] count = { 0 };
+            helpers = Executors.newFixedThreadPool(threads - 1,
+                    runnable -> newThread(runnable, "Engine helper " + ++count[0]));
+        }
+
+        searches = new Search[threads];
+        for (int id = 0; id < threads; id++) {
+            searches[id] = new Search(table, id);
+            searches[id].setTablebase(tablebase);
+            searches[id].setNetwork(network);
+        }
+        searches[0].setListener(result -> {
+            lastResult = withAllNodes(result, result.timeMillis);
+            Consumer<SearchResult> iterationListener = listener;
+            if (iterationListener != null) {
+                iterationListener.accept(lastResult);
+            }
+        });
+    }
+
+    /**
+     * Called on the engine thread with the result of every completed
+     * iteration of the main thread, the nodes of all threads counted.
+     */
+    public void setListener(Consumer<SearchResult> listener) {
+        this.listener = listener;
+    }
+
+    public int getThreads() {
+        return searches.length;
+    }
+
+    public void setHashSize(int megabytes) {
+        table.resize(megabytes);
+    }
+
+    /**
+     * Sets the opening book to play from, or null to always search.
+     */
+    public void setBook(PolyglotBook book) {
+        this.book = book;
+    }
+
+    /**
+     * Sets the endgame tables of all search threads, or null to search
+     * endgames. Must not be called while the engine is thinking.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+        for (Search search : searches) {
+            search.setTablebase(tablebase);
+        }
+    }
+
+    /**
+     * Sets the network all search threads evaluate with, or null for the
+     * piece-square evaluation. Must not be called while the engine is
+     * thinking.
+     */
+    public void setNetwork(Network network) {
+        this.network = network;
+        for (Search search : searches) {
+            search.setNetwork(network);
+        }
+    }
+
+    public void think(Position position, SearchLimits limits, Consumer<SearchResult> onDone) {
+        Position root = new Position();
+        root.copyFrom(position);
+
+        AtomicBoolean signal = new AtomicBoolean();
+        stopSignal = signal;
+        thinking = true;
+
+        worker.execute(() -> {
+            PolyglotBook openingBook = book;
+            int bookMove = openingBook == null ? Move.NONE : openingBook.probe(root);
+            if (bookMove != Move.NONE) {
+                SearchResult result = SearchResult.bookMove(bookMove);
+                lastResult = result;
+                thinking = false;
+                onDone.accept(result);
+                return;
+            }
+
+            long startTime = System.nanoTime();
+            Search[] threads = searches;
+            CountDownLatch finished = new CountDownLatch(threads.length - 1);
+
+            // The main thread watches the time, any thread may reach the nodes of all
+            AtomicLong nodes = new AtomicLong();
+            SearchLimits helperLimits = new SearchLimits(limits.depth, 0, limits.nodes);
+            for (int id = 1; id < threads.length; id++) {
+                Search helper = threads[id];
+                helpers.execute(() -> {
+                    try {
+                        helper.search(root, helperLimits, signal, nodes);
+                    } finally {
+                        finished.countDown();
+                    }
+                });
+            }
+
+            SearchResult result = threads[0].search(root, limits, signal, nodes);
+
+            signal.set(true);
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            // The helpers kept searching after the last iteration, so use the full time
+            result = withAllNodes(result, (System.nanoTime() - startTime) / 1_000_000);
+            lastResult = result;
+            thinking = false;
+            onDone.accept(result);
+        });
+    }
+
+    // Helpers still searching are counted up to their last 1024 nodes
+    private SearchResult withAllNodes(SearchResult result, long timeMillis) {
+        long nodes = 0;
+        for (Search search : searches) {
+            nodes += search.getNodes();
+        }
+        return new SearchResult(result.bestMove, result.score, result.depth, nodes, timeMillis, result.pv);
+    }
+
+    public void stop() {
+        stopSignal.set(true);
+    }
+
+    /**
+     * Stops the current search after {@code millis} milliseconds. A later
+     * search is not affected when this one ends earlier.
+     */
+    public void stopAfter(long millis) {
+        AtomicBoolean signal = stopSignal;
+        timer.schedule(() -> signal.set(true), millis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isThinking() {
+        return thinking;
+    }
+
+    /**
+     * Returns the result of the last completed iteration, null before the
+     * first search.
+     */
+    public SearchResult getLastResult() {
+        return lastResult;
+    }
+
+    public void newGame() {
+        table.clear();
+    }
+}
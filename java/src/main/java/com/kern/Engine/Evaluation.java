@@ -0,0 +1,310 @@
+package com.kern.Engine;
+
+import com.kern.Logic.Attacks;
+import com.kern.Logic.Move;
+import com.kern.Logic.PieceSquare;
+import com.kern.Logic.Position;
+
+/**
+ * The Evaluation class scores a position in centipawns from the point of
+ * view of the side to move.
+ *
+ * <p>
+ * The score is tapered between a midgame and an endgame score of material
+ * and piece placement, weighted by how much material is left (see
+ * {@link PieceSquare}). {@link Position} keeps both sums up to date while
+ * moves are made and taken back, so that part is a few multiplications and
+ * does not look at the board.
+ * </p>
+ *
+ * <p>
+ * The pawns add their structure: doubled, isolated and backward pawns cost,
+ * passed pawns gain more the further they are, and a king loses for every
+ * file next to it without a pawn of its own shortly in front. These terms
+ * only depend on the pawns and the kings, so the search looks them up in its
+ * {@link PawnTable} instead of computing them at every node. Midgame and
+ * endgame scores are packed into one int, see {@link #pack(int, int)}.
+ * </p>
+ *
+ * <p>
+ * A trained network can replace this evaluation in the search, see
+ * {@link Network}.
+ * </p>
+ *
+ * <p>
+ * {@link #seeAtLeast(Position, int, int)} is the static exchange evaluation
+ * of a capture: the material both sides win when they keep recapturing on
+ * its square with their least valuable piece, each free to stop when going
+ * on would lose. Pins are ignored.
+ * </p>
+ */
+public final class Evaluation {
+    // Piece values indexed by piece type, see Position
+    public static final int[] VALUES = { 100, 0, 900, 320, 330, 500 };
+
+    // Piece types from the least valuable up, the king last
+    private static final int[] BY_VALUE = { Position.PAWN, Position.KNIGHT, Position.BISHOP, Position.ROOK,
+            Position.QUEEN, Position.KING };
+
+    // PAWN STRUCTURE, midgame and endgame scores of one pawn
+    private static final int DOUBLED = pack(-10, -20);
+    private static final int ISOLATED = pack(-10, -15);
+    private static final int BACKWARD = pack(-8, -10);
+
+    // Passed pawns by the rank they reached, counted from their own side
+    private static final int[] PASSED = { 0, pack(5, 10), pack(5, 15), pack(10, 25), pack(20, 45), pack(35, 75),
+            pack(60, 120), 0 };
+
+    // KING SHELTER, by how many ranks the nearest pawn on a file stands in front
+    // of the king, the last for a file with none
+    private static final int[] SHELTER = { 0, 0, pack(-8, 0), pack(-16, 0), pack(-24, 0) };
+
+    private static final long FILE_A = 0x0101010101010101L;
+    private static final long FILE_H = FILE_A << 7;
+    private static final long[] ADJACENT_FILES = new long[8];
+
+    // Squares in front of a square on its file, then also on the files next to it,
+    // and the squares next to it and behind it on the files next to it
+    private static final long[][] FRONT = new long[2][64];
+    private static final long[][] PASSED_SPAN = new long[2][64];
+    private static final long[][] SUPPORT_SPAN = new long[2][64];
+
+    static {
+        for (int file = 0; file < 8; file++) {
+            ADJACENT_FILES[file] = (file > 0 ? FILE_A << (file - 1) : 0) | (file < 7 ? FILE_A << (file + 1) : 0);
+        }
+
+        for (int square = 0; square < 64; square++) {
+            int file = square & 7;
+            int rank = square >>> 3;
+            for (int other = 0; other < 64; other++) {
+                int otherFile = other & 7;
+                int otherRank = other >>> 3;
+                long bit = Position.bit(other);
+                boolean sameFile = otherFile == file;
+                boolean adjacent = Math.abs(otherFile - file) == 1;
+
+                if (sameFile && otherRank > rank) {
+                    FRONT[Position.WHITE][square] |= bit;
+                }
+                if (sameFile && otherRank < rank) {
+                    FRONT[Position.BLACK][square] |= bit;
+                }
+                if ((sameFile || adjacent) && otherRank > rank) {
+                    PASSED_SPAN[Position.WHITE][square] |= bit;
+                }
+                if ((sameFile || adjacent) && otherRank < rank) {
+                    PASSED_SPAN[Position.BLACK][square] |= bit;
+                }
+                if (adjacent && otherRank <= rank) {
+                    SUPPORT_SPAN[Position.WHITE][square] |= bit;
+                }
+                if (adjacent && otherRank >= rank) {
+                    SUPPORT_SPAN[Position.BLACK][square] |= bit;
+                }
+            }
+        }
+    }
+
+    private Evaluation() {
+    }
+
+    /**
+     * Evaluates the position, computing the pawn terms.
+     */
+    public static int evaluate(Position position) {
+        return evaluate(position, pawnStructure(position) + kingShelter(position));
+    }
+
+    /**
+     * Evaluates the position with the pawn terms from the table.
+     */
+    public static int evaluate(Position position, PawnTable pawns) {
+        return evaluate(position, pawns.probe(position));
+    }
+
+    private static int evaluate(Position position, int pawnScore) {
+        int midgame = position.midgame + midgame(pawnScore);
+        int endgame = position.endgame + endgame(pawnScore);
+
+        // Promotions can take the phase past its start value
+        int phase = Math.min(position.phase, PieceSquare.MAX_PHASE);
+        int score = (midgame * phase + endgame * (PieceSquare.MAX_PHASE - phase)) / PieceSquare.MAX_PHASE;
+
+        return position.sideToMove == Position.WHITE ? score : -score;
+    }
+
+    /**
+     * Returns a midgame and an endgame score in one int, the endgame score in
+     * the upper half. Packed scores are added and subtracted as they are.
+     */
+    public static int pack(int midgame, int endgame) {
+        return (endgame << 16) + midgame;
+    }
+
+    public static int midgame(int score) {
+        return (short) score;
+    }
+
+    // Rounded so that a negative midgame score borrows nothing from the endgame
+    public static int endgame(int score) {
+        return (short) ((score + 0x8000) >> 16);
+    }
+
+    // PAWNS
+
+    /**
+     * Returns the packed score of the pawn structure for White.
+     */
+    public static int pawnStructure(Position position) {
+        return pawnStructure(position, Position.WHITE) - pawnStructure(position, Position.BLACK);
+    }
+
+    private static int pawnStructure(Position position, int color) {
+        long own = position.pieces(color, Position.PAWN);
+        long enemy = position.pieces(1 - color, Position.PAWN);
+        long enemyAttacks = color == Position.WHITE
+                ? (enemy & ~FILE_A) >>> 9 | (enemy & ~FILE_H) >>> 7
+                : (enemy & ~FILE_A) << 7 | (enemy & ~FILE_H) << 9;
+
+        int score = 0;
+        for (long pawns = own; pawns != 0; pawns &= pawns - 1) {
+            int square = Long.numberOfTrailingZeros(pawns);
+            boolean isolated = (own & ADJACENT_FILES[square & 7]) == 0;
+            boolean doubled = (own & FRONT[color][square]) != 0;
+
+            if (doubled) {
+                score += DOUBLED;
+            }
+            if (isolated) {
+                score += ISOLATED;
+            }
+
+            // Only the front pawn of a file can be passed
+            if (!doubled && (enemy & PASSED_SPAN[color][square]) == 0) {
+                score += PASSED[color == Position.WHITE ? square >>> 3 : 7 - (square >>> 3)];
+            } else if (!isolated && (own & SUPPORT_SPAN[color][square]) == 0) {
+                // No pawn can come up beside it and its stop square is guarded
+                int stop = color == Position.WHITE ? square + 8 : square - 8;
+                if ((enemyAttacks & Position.bit(stop)) != 0) {
+                    score += BACKWARD;
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Returns the packed score of both kings' pawn shelter for White.
+     */
+    public static int kingShelter(Position position) {
+        return kingShelter(position, Position.WHITE) - kingShelter(position, Position.BLACK);
+    }
+
+    private static int kingShelter(Position position, int color) {
+        int king = position.kingSquare(color);
+        if (king == 64) {
+            return 0;
+        }
+
+        long own = position.pieces(color, Position.PAWN);
+        int rank = king >>> 3;
+
+        // The files around a king on the edge are those of the b or g file
+        int center = Math.max(1, Math.min(6, king & 7));
+        int score = 0;
+        for (int file = center - 1; file <= center + 1; file++) {
+            long shield = own & FRONT[color][rank * 8 + file];
+            if (shield == 0) {
+                score += SHELTER[SHELTER.length - 1];
+                continue;
+            }
+            int nearest = color == Position.WHITE ? Long.numberOfTrailingZeros(shield)
+                    : 63 - Long.numberOfLeadingZeros(shield);
+            score += SHELTER[Math.min(Math.abs((nearest >>> 3) - rank), SHELTER.length - 2)];
+        }
+        return score;
+    }
+
+    /**
+     * Returns whether the exchange started by {@code move} wins at least
+     * {@code threshold} centipawns for the side to move. Castling and
+     * promotions are taken as even trades.
+     */
+    public static boolean seeAtLeast(Position position, int move, int threshold) {
+        if (Move.isCastling(move) || Move.isPromotion(move)) {
+            return threshold <= 0;
+        }
+
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int captured = Move.isEnPassant(move) ? Position.PAWN
+                : Move.isCapture(move) ? Position.type(position.pieceAt(to)) : -1;
+
+        // What the move wins if it is not recaptured, then what it risks if it is
+        int swap = (captured < 0 ? 0 : VALUES[captured]) - threshold;
+        if (swap < 0) {
+            return false;
+        }
+        swap = VALUES[Position.type(position.pieceAt(from))] - swap;
+        if (swap <= 0) {
+            return true;
+        }
+
+        long occupied = position.occupied ^ Position.bit(from) ^ Position.bit(to);
+        if (Move.isEnPassant(move)) {
+            occupied ^= Position.bit(position.sideToMove == Position.WHITE ? to - 8 : to + 8);
+        }
+        long queens = position.pieces(Position.WHITE, Position.QUEEN) | position.pieces(Position.BLACK, Position.QUEEN);
+        long diagonal = queens | position.pieces(Position.WHITE, Position.BISHOP)
+                | position.pieces(Position.BLACK, Position.BISHOP);
+        long straight = queens | position.pieces(Position.WHITE, Position.ROOK)
+                | position.pieces(Position.BLACK, Position.ROOK);
+        long attackers = position.attackersTo(to, Position.WHITE, occupied)
+                | position.attackersTo(to, Position.BLACK, occupied);
+
+        // Whoever runs out of profitable recaptures first loses the exchange
+        int side = position.sideToMove;
+        boolean win = true;
+        while (true) {
+            side = 1 - side;
+            attackers &= occupied;
+            long own = attackers & position.colors[side];
+            if (own == 0) {
+                break;
+            }
+            win = !win;
+
+            int type = leastValuable(position, side, own);
+            if (type == Position.KING) {
+                // The king may only take the last piece
+                return (attackers & position.colors[1 - side]) != 0 ? !win : win;
+            }
+
+            swap = VALUES[type] - swap;
+            if (swap < (win ? 1 : 0)) {
+                break;
+            }
+
+            occupied ^= Long.lowestOneBit(own & position.pieces(side, type));
+
+            // Sliders behind the piece that just took join in
+            if (type == Position.PAWN || type == Position.BISHOP || type == Position.QUEEN) {
+                attackers |= Attacks.bishop(to, occupied) & diagonal;
+            }
+            if (type == Position.ROOK || type == Position.QUEEN) {
+                attackers |= Attacks.rook(to, occupied) & straight;
+            }
+        }
+        return win;
+    }
+
+    private static int leastValuable(Position position, int side, long attackers) {
+        for (int type : BY_VALUE) {
+            if ((attackers & position.pieces(side, type)) != 0) {
+                return type;
+            }
+        }
+        return Position.KING;
+    }
+}
@@ -0,0 +1,238 @@
+package com.kern.Engine;
+
+import com.kern.Logic.Move;
+import com.kern.Logic.MoveGenerator;
+import com.kern.Logic.Position;
+
+/**
+ * The MovePicker class hands out the moves of one node of the search, the
+ * most promising first, and generates them only as far as they are needed.
+ *
+ * <p>
+ * The moves come in stages, and a stage is only generated once the ones
+ * before it are used up without a cutoff:
+ * <ol>
+ * <li>the move of the {@link TranspositionTable}, checked for legality
+ * without generating the other moves.</li>
+ * <li>the captures and queen promotions that do not lose material by
+ * static exchange evaluation, the most valuable victim and the least
+ * valuable attacker first.</li>
+ * <li>the two killer moves, quiet moves that caused a cutoff at the same ply
+ * elsewhere in the tree.</li>
+ * <li>the quiet moves by their history score: how often they caused a
+ * cutoff anywhere in the tree.</li>
+ * <li>the captures that lose material and the underpromotions.</li>
+ * </ol>
+ * The quiescence search only takes the second stage, or all of them when
+ * the side to move is in check.
+ * </p>
+ *
+ * <p>
+ * A picker reuses its arrays and belongs to one ply of one {@link Search}.
+ * </p>
+ */
+final class MovePicker {
+    // STAGES in the order they are tried
+    private static final int HASH_MOVE = 0;
+    private static final int GENERATE_CAPTURES = 1;
+    private static final int GOOD_CAPTURES = 2;
+    private static final int FIRST_KILLER = 3;
+    private static final int SECOND_KILLER = 4;
+    private static final int GENERATE_QUIETS = 5;
+    private static final int QUIETS = 6;
+    private static final int BAD_CAPTURES = 7;
+    private static final int DONE = 8;
+
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final int[] scores = new int[MoveGenerator.MAX_MOVES];
+    private final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+    private final long[] counters;
+
+    private Position position;
+    private int[][] history;
+    private boolean quiescence;
+    private int stage;
+
+    private int hashMove;
+    private int firstKiller;
+    private int secondKiller;
+
+    // Moves left of the current stage are at [index, end), bad captures at [0, badCount)
+    private int index;
+    private int end;
+    private int badCount;
+
+    /**
+     * Creates a picker that counts its work into the {@link SearchStatistics}
+     * counters of its search.
+     */
+    MovePicker(long[] counters) {
+        this.counters = counters;
+    }
+
+    /**
+     * Prepares the moves of a node of the main search.
+     */
+    void init(Position position, int hashMove, int firstKiller, int secondKiller, int[][] history) {
+        this.position = position;
+        this.hashMove = hashMove;
+        this.firstKiller = firstKiller;
+        this.secondKiller = secondKiller;
+        this.history = history;
+        quiescence = false;
+        stage = HASH_MOVE;
+    }
+
+    /**
+     * Prepares the winning and even captures of a node of the quiescence
+     * search.
+     */
+    void initQuiescence(Position position) {
+        this.position = position;
+        hashMove = Move.NONE;
+        quiescence = true;
+        stage = GENERATE_CAPTURES;
+    }
+
+    /**
+     * Returns the next move, or {@link Move#NONE} when there is none left.
+     * Every stage falls through to the next once it has no move left.
+     */
+    @SuppressWarnings("fallthrough")
+    int next() {
+        switch (stage) {
+            case HASH_MOVE:
+                stage = GENERATE_CAPTURES;
+                if (SearchStatistics.ENABLED && hashMove != Move.NONE) {
+                    counters[SearchStatistics.LEGALITY_CHECKS]++;
+                }
+                if (MoveGenerator.contains(position, hashMove, buffer)) {
+                    return hashMove;
+                }
+                // fall through
+            case GENERATE_CAPTURES:
+                if (SearchStatistics.ENABLED) {
+                    counters[SearchStatistics.CAPTURE_GENERATIONS]++;
+                }
+                end = MoveGenerator.generate(position, moves, 0, MoveGenerator.CAPTURES, ~0L);
+                scoreCaptures();
+                index = 0;
+                badCount = 0;
+                stage = GOOD_CAPTURES;
+                // fall through
+            case GOOD_CAPTURES:
+                while (index < end) {
+                    int move = pick();
+                    if (move == hashMove) {
+                        continue;
+                    }
+
+                    // Kept for the last stage, the quiescence search drops them
+                    if (Move.isPromotion(move) ? Move.promotion(move) != Position.QUEEN
+                            : !Evaluation.seeAtLeast(position, move, 0)) {
+                        moves[badCount++] = move;
+                        continue;
+                    }
+                    return move;
+                }
+                if (quiescence) {
+                    stage = DONE;
+                    return Move.NONE;
+                }
+                stage = FIRST_KILLER;
+                // fall through
+            case FIRST_KILLER:
+                stage = SECOND_KILLER;
+                if (isKiller(firstKiller)) {
+                    return firstKiller;
+                }
+                // fall through
+            case SECOND_KILLER:
+                stage = GENERATE_QUIETS;
+                if (secondKiller != firstKiller && isKiller(secondKiller)) {
+                    return secondKiller;
+                }
+                // fall through
+            case GENERATE_QUIETS:
+                if (SearchStatistics.ENABLED) {
+                    counters[SearchStatistics.QUIET_GENERATIONS]++;
+                }
+                index = badCount;
+                end = MoveGenerator.generate(position, moves, badCount, MoveGenerator.QUIETS, ~0L);
+                scoreQuiets();
+                stage = QUIETS;
+                // fall through
+            case QUIETS:
+                while (index < end) {
+                    int move = pick();
+                    if (move != hashMove && move != firstKiller && move != secondKiller) {
+                        return move;
+                    }
+                }
+                index = 0;
+                stage = BAD_CAPTURES;
+                // fall through
+            case BAD_CAPTURES:
+                if (index < badCount) {
+                    return moves[index++];
+                }
+                stage = DONE;
+                // fall through
+            default:
+                return Move.NONE;
+        }
+    }
+
+    // A killer comes from another position, so it must be quiet and legal here
+    private boolean isKiller(int move) {
+        if (move == Move.NONE || move == hashMove || (move & (Move.CAPTURE | Move.PROMOTION)) != 0) {
+            return false;
+        }
+        if (SearchStatistics.ENABLED) {
+            counters[SearchStatistics.LEGALITY_CHECKS]++;
+        }
+        return MoveGenerator.contains(position, move, buffer);
+    }
+
+    // Most valuable victim first, then least valuable attacker, promotions by their piece
+    private void scoreCaptures() {
+        for (int i = 0; i < end; i++) {
+            int move = moves[i];
+            int score = 0;
+            if (Move.isCapture(move)) {
+                int victim = Move.isEnPassant(move) ? Position.PAWN
+                        : Position.type(position.pieceAt(Move.to(move)));
+                int attacker = Position.type(position.pieceAt(Move.from(move)));
+                score = Evaluation.VALUES[victim] * 10 - Evaluation.VALUES[attacker] / 10;
+            }
+            if (Move.isPromotion(move)) {
+                score += Evaluation.VALUES[Move.promotion(move)] * 10;
+            }
+            scores[i] = score;
+        }
+    }
+
+    private void scoreQuiets() {
+        int[] scoresOfSide = history[position.sideToMove];
+        for (int i = index; i < end; i++) {
+            int move = moves[i];
+            scores[i] = scoresOfSide[Move.from(move) << 6 | Move.to(move)];
+        }
+    }
+
+    // Selection sort step: swaps the best remaining move to the front and takes it
+    private int pick() {
+        int best = index;
+        for (int i = index + 1; i < end; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+
+        int move = moves[best];
+        moves[best] = moves[index];
+        scores[best] = scores[index];
+        index++;
+        return move;
+    }
+}
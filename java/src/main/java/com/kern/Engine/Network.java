@@ -0,0 +1,98 @@
+package com.kern.Engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.kern.Logic.Position;
+
+/**
+ * The Network class holds the weights of a small neural evaluation network.
+ *
+ * <p>
+ * The network has the common {@code (768 -> N) x 2 -> 1} shape. Its inputs
+ * are the 768 piece kinds on squares, seen once from each side: own pieces
+ * first, with the board flipped for Black. Each side's inputs feed a hidden
+ * layer of {@code N} neurons, the accumulator, which is not recomputed per
+ * position but updated by the few inputs a move changes (see
+ * {@link NnueEvaluator}). The output neuron reads both accumulators, the one
+ * of the side to move first, through a clipped ReLU.
+ * </p>
+ *
+ * <p>
+ * All weights are quantized 16-bit integers: hidden weights and biases scaled
+ * by {@link #QA}, output weights by {@link #QB}. A network file holds, little
+ * endian, the hidden weights input by input, the hidden biases, the output
+ * weights and the output bias, optionally padded to 64 bytes, which is the
+ * raw layout most trainers write for this shape. A Network is immutable and
+ * shared by all search threads.
+ * </p>
+ */
+public final class Network {
+    public static final int INPUTS = 768;
+
+    // QUANTIZATION of the hidden and output layers, and centipawns per unit
+    public static final int QA = 255;
+    public static final int QB = 64;
+    public static final int SCALE = 400;
+
+    // Input of each piece type in the order of the trainers: P, N, B, R, Q, K
+    private static final int[] TYPE_INPUTS = { 0, 5, 4, 1, 2, 3 };
+
+    final int hidden;
+    final short[] inputWeights;
+    final short[] hiddenBiases;
+    final short[] outputWeights;
+    final int outputBias;
+
+    public Network(short[] inputWeights, short[] hiddenBiases, short[] outputWeights, int outputBias) {
+        hidden = hiddenBiases.length;
+        if (inputWeights.length != INPUTS * hidden || outputWeights.length != 2 * hidden) {
+            throw new IllegalArgumentException("Weights do not match " + hidden + " hidden neurons");
+        }
+
+        this.inputWeights = inputWeights;
+        this.hiddenBiases = hiddenBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    /**
+     * Reads a network file, the number of hidden neurons follows from its
+     * size.
+     */
+    public static Network load(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+
+        // Weights and biases: INPUTS * N + N + 2 * N + 1, plus up to 64 bytes of padding
+        int values = bytes.length / 2;
+        int hidden = (values - 1) / (INPUTS + 3);
+        if (hidden == 0 || bytes.length % 2 != 0 || values - (hidden * (INPUTS + 3) + 1) >= 32) {
+            throw new IOException("Not a (" + INPUTS + " -> N) x 2 -> 1 network: " + file);
+        }
+
+        ShortBuffer data = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        short[] inputWeights = new short[INPUTS * hidden];
+        short[] hiddenBiases = new short[hidden];
+        short[] outputWeights = new short[2 * hidden];
+        data.get(inputWeights).get(hiddenBiases).get(outputWeights);
+        return new Network(inputWeights, hiddenBiases, outputWeights, data.get());
+    }
+
+    public int getHidden() {
+        return hidden;
+    }
+
+    /**
+     * Returns the input of a piece kind on a square as seen by
+     * {@code perspective}.
+     */
+    static int input(int perspective, int code, int square) {
+        int side = Position.color(code) == perspective ? 0 : 6;
+        int relative = perspective == Position.WHITE ? square : square ^ 56;
+        return (side + TYPE_INPUTS[Position.type(code)]) * 64 + relative;
+    }
+}
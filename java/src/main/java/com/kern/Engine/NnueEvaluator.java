@@ -0,0 +1,193 @@
+package com.kern.Engine;
+
+import com.kern.Logic.Move;
+import com.kern.Logic.Position;
+
+/**
+ * The NnueEvaluator class evaluates positions with a {@link Network} while a
+ * search makes and takes back moves.
+ *
+ * <p>
+ * It keeps one pair of accumulators, the hidden layer seen from White and
+ * from Black, for every ply of the current line. {@link #push(Position, int)}
+ * derives the accumulators of the next ply from the current ones by adding
+ * and subtracting the weights of the two to four inputs the move changes, and
+ * {@link #pop()} takes a move back by simply dropping back one ply. Only
+ * {@link #refresh(Position)} at the root sums the inputs of every piece.
+ * </p>
+ *
+ * <p>
+ * The accumulators live in one preallocated array, so nothing is allocated
+ * while searching. With the {@code jdk.incubator.vector} module added to the
+ * JVM ({@code --add-modules jdk.incubator.vector}) the updates and the
+ * output layer run on SIMD registers (see {@link NnueVectors}); without it
+ * the same arithmetic runs as plain loops. An evaluator belongs to one search
+ * thread.
+ * </p>
+ */
+public final class NnueEvaluator {
+    // Whether the SIMD kernels are usable in this JVM
+    static final boolean VECTORS = vectorsAvailable();
+
+    private final Network network;
+    private final int hidden;
+
+    // ACCUMULATORS, White's then Black's for every ply
+    private final short[] accumulators;
+    private int ply;
+
+    // Inputs a move adds and removes, seen from one side
+    private final int[] added = new int[2];
+    private final int[] removed = new int[2];
+
+    public NnueEvaluator(Network network) {
+        this.network = network;
+        hidden = network.hidden;
+        accumulators = new short[(Search.MAX_PLY + 1) * 2 * hidden];
+    }
+
+    private static boolean vectorsAvailable() {
+        try {
+            // Vectors of fewer than 8 lanes are no faster than the loops
+            return NnueVectors.lanes() >= 8;
+        } catch (LinkageError e) {
+            // The module is not in the module graph of this JVM
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether the SIMD kernels are used.
+     */
+    public static boolean usesVectors() {
+        return VECTORS;
+    }
+
+    /**
+     * Computes the accumulators of the position from scratch and makes it
+     * the root of the moves to come.
+     */
+    public void refresh(Position position) {
+        ply = 0;
+        for (int perspective = Position.WHITE; perspective <= Position.BLACK; perspective++) {
+            int offset = perspective * hidden;
+            System.arraycopy(network.hiddenBiases, 0, accumulators, offset, hidden);
+
+            for (int code = 0; code < 12; code++) {
+                for (long bits = position.pieces[code]; bits != 0; bits &= bits - 1) {
+                    int input = Network.input(perspective, code, Long.numberOfTrailingZeros(bits));
+                    added[0] = input;
+                    update(offset, offset, 1, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the accumulators for {@code move}, to be called before the
+     * move is made on the position.
+     */
+    public void push(Position position, int move) {
+        int us = position.sideToMove;
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int code = position.pieceAt(from);
+        int placed = Move.isPromotion(move) ? Position.code(us, Move.promotion(move)) : code;
+
+        int captured = position.pieceAt(to);
+        int captureSquare = to;
+        if (Move.isEnPassant(move)) {
+            captureSquare = us == Position.WHITE ? to - 8 : to + 8;
+            captured = position.pieceAt(captureSquare);
+        }
+
+        // The rook that jumps over the king
+        int rook = Position.code(us, Position.ROOK);
+        int rookFrom = to > from ? from + 3 : from - 4;
+        int rookTo = to > from ? from + 1 : from - 1;
+
+        int source = ply * 2 * hidden;
+        int target = source + 2 * hidden;
+        for (int perspective = Position.WHITE; perspective <= Position.BLACK; perspective++) {
+            removed[0] = Network.input(perspective, code, from);
+            added[0] = Network.input(perspective, placed, to);
+            int removeCount = 1;
+            int addCount = 1;
+
+            if (captured != Position.EMPTY) {
+                removed[removeCount++] = Network.input(perspective, captured, captureSquare);
+            } else if (Move.isCastling(move)) {
+                removed[removeCount++] = Network.input(perspective, rook, rookFrom);
+                added[addCount++] = Network.input(perspective, rook, rookTo);
+            }
+
+            int offset = perspective * hidden;
+            update(source + offset, target + offset, addCount, removeCount);
+        }
+        ply++;
+    }
+
+    /**
+     * Goes back to the accumulators before the last move pushed.
+     */
+    public void pop() {
+        ply--;
+    }
+
+    /**
+     * Returns the score of the position reached by the pushed moves, in
+     * centipawns from the point of view of the side to move.
+     */
+    public int evaluate(Position position) {
+        int base = ply * 2 * hidden;
+        int us = base + position.sideToMove * hidden;
+        int them = base + (1 - position.sideToMove) * hidden;
+
+        int sum = VECTORS ? NnueVectors.output(accumulators, us, them, network.outputWeights, hidden)
+                : output(us, them);
+        return (int) (((long) sum + network.outputBias) * Network.SCALE / (Network.QA * Network.QB));
+    }
+
+    private void update(int source, int target, int addCount, int removeCount) {
+        if (VECTORS) {
+            NnueVectors.update(network.inputWeights, hidden, accumulators, source, target,
+                    added, addCount, removed, removeCount);
+            return;
+        }
+
+        // One pass per row keeps the loops simple enough for the JIT to vectorize
+        short[] weights = network.inputWeights;
+        if (source != target) {
+            System.arraycopy(accumulators, source, accumulators, target, hidden);
+        }
+        for (int k = 0; k < addCount; k++) {
+            int row = added[k] * hidden;
+            for (int i = 0; i < hidden; i++) {
+                accumulators[target + i] += weights[row + i];
+            }
+        }
+        for (int k = 0; k < removeCount; k++) {
+            int row = removed[k] * hidden;
+            for (int i = 0; i < hidden; i++) {
+                accumulators[target + i] -= weights[row + i];
+            }
+        }
+    }
+
+    private int output(int us, int them) {
+        short[] weights = network.outputWeights;
+        int sum = 0;
+        for (int i = 0; i < hidden; i++) {
+            sum += clip(accumulators[us + i]) * weights[i];
+        }
+        for (int i = 0; i < hidden; i++) {
+            sum += clip(accumulators[them + i]) * weights[hidden + i];
+        }
+        return sum;
+    }
+
+    // Clipped ReLU
+    static int clip(int value) {
+        return Math.min(Math.max(value, 0), Network.QA);
+    }
+}
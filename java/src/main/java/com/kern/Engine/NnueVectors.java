@@ -0,0 +1,95 @@
+package com.kern.Engine;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The NnueVectors class holds the SIMD kernels of {@link NnueEvaluator}.
+ *
+ * <p>
+ * It is the only class that touches the {@code jdk.incubator.vector} API, so
+ * a JVM started without that module fails to load this class alone, and
+ * the evaluator falls back to its plain loops. The kernels use the widest
+ * vectors of the CPU: 16 lanes of 16 bits with AVX2 for the accumulator
+ * updates, widened to 32-bit lanes for the products of the output layer.
+ * </p>
+ */
+final class NnueVectors {
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    private NnueVectors() {
+    }
+
+    static int lanes() {
+        return SHORTS.length();
+    }
+
+    /**
+     * Writes the accumulator at {@code source} plus the weights of the added
+     * inputs minus those of the removed inputs to {@code target}.
+     */
+    static void update(short[] weights, int hidden, short[] accumulators, int source, int target,
+            int[] added, int addCount, int[] removed, int removeCount) {
+        int bound = SHORTS.loopBound(hidden);
+        int i = 0;
+        for (; i < bound; i += SHORTS.length()) {
+            ShortVector value = ShortVector.fromArray(SHORTS, accumulators, source + i);
+            for (int k = 0; k < addCount; k++) {
+                value = value.add(ShortVector.fromArray(SHORTS, weights, added[k] * hidden + i));
+            }
+            for (int k = 0; k < removeCount; k++) {
+                value = value.sub(ShortVector.fromArray(SHORTS, weights, removed[k] * hidden + i));
+            }
+            value.intoArray(accumulators, target + i);
+        }
+
+        for (; i < hidden; i++) {
+            int value = accumulators[source + i];
+            for (int k = 0; k < addCount; k++) {
+                value += weights[added[k] * hidden + i];
+            }
+            for (int k = 0; k < removeCount; k++) {
+                value -= weights[removed[k] * hidden + i];
+            }
+            accumulators[target + i] = (short) value;
+        }
+    }
+
+    /**
+     * Returns the output layer before its bias: both clipped accumulators
+     * times their output weights, summed in 32 bits like the plain loop.
+     */
+    static int output(short[] accumulators, int us, int them, short[] weights, int hidden) {
+        IntVector sum = IntVector.zero(INTS);
+        sum = dot(sum, accumulators, us, weights, 0, hidden);
+        sum = dot(sum, accumulators, them, weights, hidden, hidden);
+        int total = sum.reduceLanes(VectorOperators.ADD);
+
+        for (int i = SHORTS.loopBound(hidden); i < hidden; i++) {
+            total += NnueEvaluator.clip(accumulators[us + i]) * weights[i];
+            total += NnueEvaluator.clip(accumulators[them + i]) * weights[hidden + i];
+        }
+        return total;
+    }
+
+    private static IntVector dot(IntVector sum, short[] accumulators, int offset, short[] weights, int weightOffset,
+            int hidden) {
+        int bound = SHORTS.loopBound(hidden);
+        for (int i = 0; i < bound; i += SHORTS.length()) {
+            ShortVector clipped = ShortVector.fromArray(SHORTS, accumulators, offset + i)
+                    .max((short) 0).min((short) Network.QA);
+            ShortVector weight = ShortVector.fromArray(SHORTS, weights, weightOffset + i);
+
+            // Products need 32 bits, so each half is widened before multiplying
+            for (int part = 0; part < 2; part++) {
+                IntVector x = (IntVector) clipped.convertShape(VectorOperators.S2I, INTS, part);
+                IntVector w = (IntVector) weight.convertShape(VectorOperators.S2I, INTS, part);
+                sum = sum.add(x.mul(w));
+            }
+        }
+        return sum;
+    }
+}
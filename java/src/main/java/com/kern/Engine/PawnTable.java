@@ -0,0 +1,82 @@
+package com.kern.Engine;
+
+import com.kern.Logic.Position;
+
+/**
+ * The PawnTable class caches the pawn evaluation by the pawn key of the
+ * position (see {@link Position#pawnKey}).
+ *
+ * <p>
+ * The pawns change on few moves of a search, so most positions it evaluates
+ * have a pawn structure it evaluated before. An entry holds the key, the
+ * structure score of {@link Evaluation#pawnStructure(Position)} and the king
+ * shelter of both sides for the king squares it was computed for. When only
+ * a king has moved, the shelter is computed again and the structure is kept.
+ * </p>
+ *
+ * <p>
+ * The table is a fixed array of {@link #ENTRIES} entries, always replaced,
+ * and belongs to one {@link Search} thread, so it needs no locking. Scores
+ * are packed with {@link Evaluation#pack(int, int)}.
+ * </p>
+ */
+public final class PawnTable {
+    // A power of two, 16K entries take 320 KB and fit the L2 cache
+    public static final int ENTRIES = 1 << 14;
+
+    private final long[] keys = new long[ENTRIES];
+    private final int[] structures = new int[ENTRIES];
+    private final int[] shelters = new int[ENTRIES];
+
+    // Both king squares the shelter is for, -1 when there is none
+    private final int[] kings = new int[ENTRIES];
+
+    private final long[] counters;
+
+    public PawnTable() {
+        this(new long[SearchStatistics.COUNT]);
+    }
+
+    /**
+     * Creates a table that counts its probes and hits into the statistics
+     * counters of its search.
+     */
+    PawnTable(long[] counters) {
+        this.counters = counters;
+        clear();
+    }
+
+    public void clear() {
+        for (int i = 0; i < ENTRIES; i++) {
+            keys[i] = 0L;
+            kings[i] = -1;
+        }
+    }
+
+    /**
+     * Returns the packed pawn structure and king shelter score of the
+     * position for White, from the table when it has them.
+     */
+    public int probe(Position position) {
+        long key = position.pawnKey;
+        int index = (int) key & (ENTRIES - 1);
+        int kingSquares = position.kingSquare(Position.WHITE) | position.kingSquare(Position.BLACK) << 7;
+
+        if (SearchStatistics.ENABLED) {
+            counters[SearchStatistics.PAWN_PROBES]++;
+        }
+        if (keys[index] != key || kings[index] < 0) {
+            keys[index] = key;
+            structures[index] = Evaluation.pawnStructure(position);
+            kings[index] = -1;
+        } else if (SearchStatistics.ENABLED) {
+            counters[SearchStatistics.PAWN_HITS]++;
+        }
+
+        if (kings[index] != kingSquares) {
+            kings[index] = kingSquares;
+            shelters[index] = Evaluation.kingShelter(position);
+        }
+        return structures[index] + shelters[index];
+    }
+}
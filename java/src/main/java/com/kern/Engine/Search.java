@@ -0,0 +1,505 @@
+package com.kern.Engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.kern.Logic.Move;
+import com.kern.Logic.MoveGenerator;
+import com.kern.Logic.Position;
+
+/**
+ * The Search class finds the best move of a position.
+ *
+ * <p>
+ * It runs a negamax alpha-beta search with principal variation search: the
+ * first move of every node is searched with the full window, the others with
+ * a null window that is only widened again when a move turns out better.
+ * Leaves are resolved with a capture-only quiescence search, which tries
+ * every evasion instead when the side to move is in check. With a
+ * {@link Tablebase} set, positions of few enough men below the root are not
+ * searched but scored exactly from their table.
+ * </p>
+ *
+ * <p>
+ * Every node takes its moves from a {@link MovePicker}, which generates them
+ * in stages and tries the table move, the winning captures, the killer moves
+ * of the ply and the quiet moves by their history score in that order. A
+ * quiet move that causes a cutoff becomes a killer and gains history, the
+ * quiet moves tried before it lose some; the scores decay between searches.
+ * </p>
+ *
+ * <p>
+ * Leaves are scored by {@link Evaluation}, or with a {@link Network} set by
+ * an {@link NnueEvaluator} that follows every move made and taken back.
+ * </p>
+ *
+ * <p>
+ * The search deepens iteratively, one ply per iteration, and reuses the
+ * {@link TranspositionTable} between iterations to try the best move of the
+ * previous one first. It stops at the depth, time or node limit of the
+ * {@link SearchLimits}, or when {@link #stop()} is called from another
+ * thread; the result of the last completed iteration is returned.
+ * </p>
+ *
+ * <p>
+ * With {@link SearchStatistics#ENABLED} the search counts nodes, table hits
+ * and cutoffs, and every iteration is recorded as a Flight Recorder event.
+ * </p>
+ *
+ * <p>
+ * A Search keeps its own copy of the position and preallocated move pickers,
+ * one instance must only be used by one thread at a time. Several instances
+ * sharing one table, one stop signal and one node count search in parallel
+ * (see {@link Engine}), the node limit then holding for their nodes together;
+ * helpers with an odd id start one ply deeper, so the
+ * threads spread over different depths and fill the table for each other.
+ * </p>
+ */
+public class Search {
+    public static final int INFINITY = 32000;
+    public static final int MATE = 31000;
+    public static final int MAX_PLY = 128;
+
+    // History scores stay within +-HISTORY_MAX, a bonus shrinks as they approach it
+    private static final int HISTORY_MAX = 16384;
+
+    private final TranspositionTable table;
+    private final int id;
+    private final Position position = new Position();
+
+    private final MovePicker[] pickers = new MovePicker[MAX_PLY];
+    private final int[][] quiets = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][] history = new int[2][64 * 64];
+    private final PawnTable pawns;
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+
+    // Counted by this thread alone, added to the totals after every iteration
+    private final long[] counters = new long[SearchStatistics.COUNT];
+    private long countedNodes;
+
+    private long nodes;
+    private long startTime;
+
+    // The nodes as other threads may read them, updated every 1024 nodes
+    private volatile long publishedNodes;
+    private long timeLimit;
+    private long nodeLimit;
+    private volatile AtomicBoolean stopSignal = new AtomicBoolean();
+    private AtomicLong sharedNodes = new AtomicLong();
+    private boolean stopped;
+
+    private Consumer<SearchResult> listener;
+    private Tablebase tablebase;
+    private NnueEvaluator nnue;
+
+    public Search(TranspositionTable table) {
+        this(table, 0);
+    }
+
+    /**
+     * Creates the search of thread {@code id}, 0 being the main thread.
+     */
+    public Search(TranspositionTable table, int id) {
+        this.table = table;
+        this.id = id;
+        pawns = new PawnTable(counters);
+        for (int ply = 0; ply < MAX_PLY; ply++) {
+            pickers[ply] = new MovePicker(counters);
+        }
+    }
+
+    /**
+     * Called with the result of every completed iteration.
+     */
+    public void setListener(Consumer<SearchResult> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the endgame tables to score positions from, or null to search them.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * Sets the network to evaluate with, or null for the piece-square
+     * evaluation.
+     */
+    public void setNetwork(Network network) {
+        nnue = network == null ? null : new NnueEvaluator(network);
+    }
+
+    public void stop() {
+        stopSignal.set(true);
+    }
+
+    /**
+     * Returns the nodes searched so far, up to the last 1024 while searching.
+     * May be called from any thread.
+     */
+    public long getNodes() {
+        return publishedNodes;
+    }
+
+    public SearchResult search(Position root, SearchLimits limits) {
+        return search(root, limits, new AtomicBoolean());
+    }
+
+    /**
+     * Searches until the limits are reached or {@code stopSignal} is set by
+     * another thread.
+     */
+    public SearchResult search(Position root, SearchLimits limits, AtomicBoolean stopSignal) {
+        return search(root, limits, stopSignal, new AtomicLong());
+    }
+
+    /**
+     * Searches like {@link #search(Position, SearchLimits, AtomicBoolean)},
+     * adding its nodes to {@code sharedNodes} every 1024 nodes. The node limit
+     * is checked against that total, so threads sharing it stop together.
+     */
+    public SearchResult search(Position root, SearchLimits limits, AtomicBoolean stopSignal,
+            AtomicLong sharedNodes) {
+        position.copyFrom(root);
+        if (nnue != null) {
+            nnue.refresh(position);
+        }
+        if (id == 0) {
+            table.newSearch();
+        }
+
+        // Killers belong to the old position, history is still worth a little
+        for (int[] pair : killers) {
+            Arrays.fill(pair, Move.NONE);
+        }
+        for (int[] scores : history) {
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] /= 2;
+            }
+        }
+
+        this.stopSignal = stopSignal;
+        this.sharedNodes = sharedNodes;
+        nodes = 0;
+        publishedNodes = 0;
+        countedNodes = 0;
+        stopped = stopSignal.get();
+        startTime = System.nanoTime();
+        timeLimit = limits.timeMillis > 0 ? limits.timeMillis * 1_000_000 : Long.MAX_VALUE;
+        nodeLimit = limits.nodes > 0 ? limits.nodes : Long.MAX_VALUE;
+        int maxDepth = limits.depth > 0 ? Math.min(limits.depth, MAX_PLY - 1) : MAX_PLY - 1;
+
+        SearchResult result = null;
+        for (int depth = 1 + (id & 1); depth <= maxDepth; depth++) {
+            SearchStatistics.IterationEvent event = new SearchStatistics.IterationEvent();
+            event.begin();
+
+            int score = negamax(depth, -INFINITY, INFINITY, 0);
+            if (SearchStatistics.ENABLED) {
+                addStatistics();
+            }
+
+            // An interrupted iteration is only trusted when nothing else is known
+            if (stopped && result != null) {
+                break;
+            }
+            if (pvLength[0] == 0) {
+                break;
+            }
+
+            publishedNodes = nodes;
+            result = new SearchResult(pv[0][0], score, depth, nodes, elapsedMillis(),
+                    Arrays.copyOf(pv[0], pvLength[0]));
+            if (event.shouldCommit()) {
+                event.thread = id;
+                event.depth = depth;
+                event.score = score;
+                event.nodes = nodes;
+                event.bestMove = Move.toString(result.bestMove);
+                event.commit();
+            }
+            if (listener != null) {
+                listener.accept(result);
+            }
+
+            // Another iteration would most likely not finish in time
+            if (stopped || result.isMate() || System.nanoTime() - startTime > timeLimit / 2) {
+                break;
+            }
+        }
+
+        if (result == null) {
+            // No iteration finished, fall back to any legal move
+            int[] list = new int[MoveGenerator.MAX_MOVES];
+            int count = MoveGenerator.generate(position, list);
+            int move = count > 0 ? list[0] : Move.NONE;
+            int score = count == 0 && position.inCheck() ? -MATE : 0;
+            result = new SearchResult(move, score, 0, nodes, elapsedMillis(),
+                    move == Move.NONE ? new int[0] : new int[] { move });
+        }
+        publishedNodes = nodes;
+        return result;
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+
+        if (ply > 0 && (position.isRepetition() || position.halfmoveClock >= 100)) {
+            return 0;
+        }
+
+        // Endgames in the tables are known exactly, as mates from this ply
+        if (ply > 0 && tablebase != null && Long.bitCount(position.occupied) <= Tablebase.MAX_MEN) {
+            int score = tablebase.probe(position);
+            if (score != Tablebase.UNKNOWN) {
+                return score > 0 ? score - ply : score < 0 ? score + ply : 0;
+            }
+        }
+
+        boolean inCheck = position.inCheck();
+        if (inCheck) {
+            // Look one ply further when in check
+            depth++;
+        }
+
+        if (depth <= 0 || ply >= MAX_PLY - 1) {
+            return quiescence(alpha, beta, ply);
+        }
+
+        countNode();
+        if (stopped) {
+            return 0;
+        }
+
+        boolean pvNode = beta - alpha > 1;
+        int ttMove = Move.NONE;
+        long data = table.probe(position.key);
+        if (SearchStatistics.ENABLED) {
+            counters[SearchStatistics.TABLE_PROBES]++;
+            counters[SearchStatistics.TABLE_HITS] += data != 0 ? 1 : 0;
+        }
+        if (data != 0) {
+            ttMove = TranspositionTable.move(data);
+
+            if (!pvNode && TranspositionTable.depth(data) >= depth) {
+                int score = fromTable(TranspositionTable.score(data), ply);
+                int bound = TranspositionTable.bound(data);
+                if (bound == TranspositionTable.EXACT
+                        || bound == TranspositionTable.LOWER && score >= beta
+                        || bound == TranspositionTable.UPPER && score <= alpha) {
+                    return score;
+                }
+            }
+        }
+
+        MovePicker picker = pickers[ply];
+        picker.init(position, ttMove, killers[ply][0], killers[ply][1], history);
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = Move.NONE;
+        int searched = 0;
+        int quietCount = 0;
+
+        for (int move; (move = picker.next()) != Move.NONE;) {
+            makeMove(move);
+            int score;
+            if (searched++ == 0) {
+                score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            } else {
+                // Prove the move is worse than the best one with a null window
+                score = -negamax(depth - 1, -alpha - 1, -alpha, ply + 1);
+                if (score > alpha && score < beta) {
+                    score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+                }
+            }
+            unmakeMove(move);
+
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+
+                    if (alpha >= beta) {
+                        if (SearchStatistics.ENABLED) {
+                            counters[SearchStatistics.CUTOFFS
+                                    + Math.min(searched, SearchStatistics.CUTOFF_SLOTS) - 1]++;
+                        }
+                        if (isQuiet(move)) {
+                            updateQuietStats(move, ply, depth, quietCount);
+                        }
+                        break;
+                    }
+                }
+            }
+            if (isQuiet(move)) {
+                quiets[ply][quietCount++] = move;
+            }
+        }
+
+        if (searched == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+
+        int bound = bestScore >= beta ? TranspositionTable.LOWER
+                : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(position.key, bestMove, toTable(bestScore, ply), depth, bound);
+
+        return bestScore;
+    }
+
+    private int quiescence(int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+
+        countNode();
+        if (stopped) {
+            return 0;
+        }
+
+        // In check there is no standing pat, every evasion is tried
+        boolean inCheck = position.inCheck();
+        MovePicker picker = pickers[ply];
+        if (inCheck && ply < MAX_PLY - 1) {
+            picker.init(position, Move.NONE, Move.NONE, Move.NONE, history);
+        } else {
+            // The side to move may also decline every capture
+            int standPat = nnue != null ? nnue.evaluate(position) : Evaluation.evaluate(position, pawns);
+            if (standPat >= beta || ply >= MAX_PLY - 1) {
+                return standPat;
+            }
+            if (standPat > alpha) {
+                alpha = standPat;
+            }
+
+            // Captures that lose material by exchange are not tried at all
+            picker.initQuiescence(position);
+        }
+
+        int searched = 0;
+        for (int move; (move = picker.next()) != Move.NONE;) {
+            searched++;
+            makeMove(move);
+            int score = -quiescence(-beta, -alpha, ply + 1);
+            unmakeMove(move);
+
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+
+        if (inCheck && searched == 0) {
+            return -MATE + ply;
+        }
+        return alpha;
+    }
+
+    private void makeMove(int move) {
+        if (nnue != null) {
+            nnue.push(position, move);
+        }
+        position.makeMove(move);
+    }
+
+    private void unmakeMove(int move) {
+        position.unmakeMove(move);
+        if (nnue != null) {
+            nnue.pop();
+        }
+    }
+
+    private static boolean isQuiet(int move) {
+        return (move & (Move.CAPTURE | Move.PROMOTION)) == 0;
+    }
+
+    // The quiet move caused a cutoff: it becomes a killer of the ply and gains
+    // history, the quiet moves searched before it lose as much
+    private void updateQuietStats(int move, int ply, int depth, int quietCount) {
+        int[] pair = killers[ply];
+        if (pair[0] != move) {
+            pair[1] = pair[0];
+            pair[0] = move;
+        }
+
+        int[] scores = history[position.sideToMove];
+        int bonus = Math.min(depth * depth, 400);
+        addHistory(scores, move, bonus);
+        for (int i = 0; i < quietCount; i++) {
+            addHistory(scores, quiets[ply][i], -bonus);
+        }
+    }
+
+    private static void addHistory(int[] scores, int move, int bonus) {
+        int index = Move.from(move) << 6 | Move.to(move);
+        scores[index] += bonus - scores[index] * Math.abs(bonus) / HISTORY_MAX;
+    }
+
+    private void addStatistics() {
+        counters[SearchStatistics.NODES] += nodes - countedNodes;
+        countedNodes = nodes;
+        SearchStatistics.add(counters);
+    }
+
+    private void updatePv(int ply, int move) {
+        pv[ply][0] = move;
+        System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+    private void countNode() {
+        nodes++;
+
+        // Looking at the clock and the signal every node would be too slow
+        if ((nodes & 1023) == 0) {
+            publishedNodes = nodes;
+            long total = sharedNodes.addAndGet(1024);
+            if (total >= nodeLimit || System.nanoTime() - startTime >= timeLimit) {
+                stopSignal.set(true);
+            }
+            stopped = stopSignal.get();
+        }
+    }
+
+    private long elapsedMillis() {
+        return (System.nanoTime() - startTime) / 1_000_000;
+    }
+
+    // Mate scores are stored relative to the node, not to the root
+    private static int toTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,57 @@
+package com.kern.Engine;
+
+/**
+ * The SearchLimits class tells the search when to stop: after a maximum
+ * depth, a time budget or a number of nodes, whichever comes first. A value
+ * of 0 means no limit.
+ *
+ * <p>
+ * The time budget is a hard limit, the search does not start another
+ * iteration once half of it is used. {@link #clock(long, long, int)} turns
+ * the clock of a game into such a budget.
+ * </p>
+ */
+public class SearchLimits {
+    // Assumed moves left in the game when the clock does not tell
+    public static final int DEFAULT_MOVES_TO_GO = 30;
+
+    // Kept on the clock for the delay between the search and the opponent's clock
+    public static final long MOVE_OVERHEAD_MILLIS = 50;
+
+    public int depth;
+    public long timeMillis;
+    public long nodes;
+
+    public SearchLimits() {
+    }
+
+    public SearchLimits(int depth, long timeMillis, long nodes) {
+        this.depth = depth;
+        this.timeMillis = timeMillis;
+        this.nodes = nodes;
+    }
+
+    public static SearchLimits time(long timeMillis) {
+        return new SearchLimits(0, timeMillis, 0);
+    }
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, 0, 0);
+    }
+
+    /**
+     * Returns the time limit of a move played with {@code remainingMillis}
+     * left on the clock, {@code incrementMillis} added after every move and
+     * {@code movesToGo} moves until the next time control, 0 if there is
+     * none. The search aims at an even share of the remaining time plus most
+     * of the increment and may take up to twice as much, but never all of it.
+     */
+    public static SearchLimits clock(long remainingMillis, long incrementMillis, int movesToGo) {
+        int moves = movesToGo > 0 ? movesToGo : DEFAULT_MOVES_TO_GO;
+        long share = remainingMillis / moves + incrementMillis * 3 / 4;
+
+        long available = remainingMillis - MOVE_OVERHEAD_MILLIS;
+        long limit = moves == 1 ? available : Math.min(2 * share, available / 2);
+        return time(Math.max(1, limit));
+    }
+}
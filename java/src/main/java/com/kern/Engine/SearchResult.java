@@ -0,0 +1,75 @@
+package com.kern.Engine;
+
+import com.kern.Logic.Move;
+
+/**
+ * The SearchResult class holds the outcome of one completed iteration of the
+ * search: the best move, its score and principal variation, and how much
+ * work it took.
+ */
+public class SearchResult {
+    public final int bestMove;
+    public final int score;
+    public final int depth;
+    public final long nodes;
+    public final long timeMillis;
+    public final int[] pv;
+
+    // Whether the move came from the opening book rather than a search
+    public final boolean book;
+
+    public SearchResult(int bestMove, int score, int depth, long nodes, long timeMillis, int[] pv) {
+        this(bestMove, score, depth, nodes, timeMillis, pv, false);
+    }
+
+    private SearchResult(int bestMove, int score, int depth, long nodes, long timeMillis, int[] pv,
+            boolean book) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+        this.pv = pv;
+        this.book = book;
+    }
+
+    /**
+     * Returns the result for a move played from the opening book without a
+     * search.
+     */
+    public static SearchResult bookMove(int move) {
+        return new SearchResult(move, 0, 0, 0, 0, new int[] { move }, true);
+    }
+
+    public long nodesPerSecond() {
+        return nodes * 1000 / Math.max(1, timeMillis);
+    }
+
+    /**
+     * Returns whether the move came from the opening book. A search that had
+     * no time for one iteration also returns depth 0, so this is not the same
+     * as a depth of 0.
+     */
+    public boolean isBookMove() {
+        return book;
+    }
+
+    public boolean isMate() {
+        return Math.abs(score) >= Search.MATE - Search.MAX_PLY;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append("depth ").append(depth)
+                .append(" score ").append(score)
+                .append(" nodes ").append(nodes)
+                .append(" nps ").append(nodesPerSecond())
+                .append(" time ").append(timeMillis)
+                .append(" pv");
+        for (int move : pv) {
+            text.append(' ').append(Move.toString(move));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,225 @@
+package com.kern.Engine;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * The SearchStatistics class counts what the searches of all threads do: the
+ * nodes, the hits of the {@link TranspositionTable} and of the
+ * {@link PawnTable}, which move of a node
+ * caused its cutoff, and how often the {@link MovePicker} generated moves.
+ *
+ * <p>
+ * Counting is switched on with {@code -Dkern.instrumentation=true} (or
+ * {@code --instrumentation}) before the engine starts. The switch is a
+ * constant, so with it off the JIT drops every counter from the search and
+ * nothing is left to measure. With it on, each {@link Search} counts into a
+ * plain array of its own and adds it to the shared {@link LongAdder}s once
+ * per iteration, so the threads never contend in the search itself.
+ * </p>
+ *
+ * <p>
+ * The totals are printed to the error stream every
+ * {@code kern.instrumentation.period} seconds (10 by default) while they
+ * change, and once more on exit, and recorded by JDK Flight Recorder as the
+ * periodic {@code com.kern.SearchStatistics} event. Every completed
+ * iteration is a {@code com.kern.SearchIteration} event with its depth, score
+ * and duration; it needs no switch, as Flight Recorder only builds the events
+ * a recording asks for.
+ * </p>
+ */
+public final class SearchStatistics {
+    public static final boolean ENABLED = Boolean.getBoolean("kern.instrumentation");
+
+    // COUNTERS, the indices of the array a Search counts into
+    static final int NODES = 0;
+    static final int TABLE_PROBES = 1;
+    static final int TABLE_HITS = 2;
+    static final int CAPTURE_GENERATIONS = 3;
+    static final int QUIET_GENERATIONS = 4;
+    static final int LEGALITY_CHECKS = 5;
+    static final int PAWN_PROBES = 6;
+    static final int PAWN_HITS = 7;
+    static final int CUTOFFS = 8;
+
+    // Cutoffs by the index of the move that caused them, the last slot for all later moves
+    static final int CUTOFF_SLOTS = 8;
+    static final int COUNT = CUTOFFS + CUTOFF_SLOTS;
+
+    private static final LongAdder[] TOTALS = new LongAdder[COUNT];
+
+    private static final long START_TIME = System.nanoTime();
+    private static long lastNodes;
+    private static long lastTime = START_TIME;
+
+    static {
+        for (int i = 0; i < COUNT; i++) {
+            TOTALS[i] = new LongAdder();
+        }
+        if (ENABLED) {
+            startReporting();
+        }
+    }
+
+    private SearchStatistics() {
+    }
+
+    /**
+     * Adds the counts of one search thread to the totals and clears them.
+     */
+    static void add(long[] counters) {
+        for (int i = 0; i < COUNT; i++) {
+            if (counters[i] != 0) {
+                TOTALS[i].add(counters[i]);
+                counters[i] = 0;
+            }
+        }
+    }
+
+    static long total(int counter) {
+        return TOTALS[counter].sum();
+    }
+
+    /**
+     * Returns the totals on one line, with the nodes per second since the
+     * previous call.
+     */
+    public static synchronized String summary() {
+        long nodes = total(NODES);
+        long now = System.nanoTime();
+        long nodesPerSecond = (nodes - lastNodes) * 1_000_000_000L / Math.max(1, now - lastTime);
+        lastNodes = nodes;
+        lastTime = now;
+
+        StringBuilder text = new StringBuilder("search: nodes ").append(nodes)
+                .append(" nps ").append(nodesPerSecond)
+                .append(" tt hits ").append(percent(total(TABLE_HITS), total(TABLE_PROBES)))
+                .append(" pawn hits ").append(percent(total(PAWN_HITS), total(PAWN_PROBES)))
+                .append(" generations ").append(total(CAPTURE_GENERATIONS))
+                .append('+').append(total(QUIET_GENERATIONS))
+                .append(" legality checks ").append(total(LEGALITY_CHECKS))
+                .append(" cutoffs by move");
+
+        long cutoffs = 0;
+        for (int i = 0; i < CUTOFF_SLOTS; i++) {
+            cutoffs += total(CUTOFFS + i);
+        }
+        for (int i = 0; i < CUTOFF_SLOTS; i++) {
+            text.append(i == 0 ? " " : " / ").append(percent(total(CUTOFFS + i), cutoffs));
+        }
+        return text.toString();
+    }
+
+    private static String percent(long part, long whole) {
+        return whole == 0 ? "-" : String.format("%.1f%%", part * 100.0 / whole);
+    }
+
+    private static void startReporting() {
+        long period = Long.getLong("kern.instrumentation.period", 10);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Search statistics");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Idle periods, such as the GUI waiting for a move, print nothing
+        long[] printedNodes = { 0 };
+        reporter.scheduleAtFixedRate(() -> {
+            long nodes = total(NODES);
+            if (nodes != printedNodes[0]) {
+                printedNodes[0] = nodes;
+                System.err.println(summary());
+            }
+        }, period, period, TimeUnit.SECONDS);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.println(summary())));
+        FlightRecorder.addPeriodicEvent(StatisticsEvent.class, SearchStatistics::emitStatistics);
+    }
+
+    private static void emitStatistics() {
+        StatisticsEvent event = new StatisticsEvent();
+        event.nodes = total(NODES);
+        event.tableProbes = total(TABLE_PROBES);
+        event.tableHitRate = total(TABLE_PROBES) == 0 ? 0 : (double) total(TABLE_HITS) / total(TABLE_PROBES);
+        event.pawnHitRate = total(PAWN_PROBES) == 0 ? 0 : (double) total(PAWN_HITS) / total(PAWN_PROBES);
+        event.generations = total(CAPTURE_GENERATIONS) + total(QUIET_GENERATIONS);
+        event.legalityChecks = total(LEGALITY_CHECKS);
+
+        long cutoffs = 0;
+        for (int i = 0; i < CUTOFF_SLOTS; i++) {
+            cutoffs += total(CUTOFFS + i);
+        }
+        event.cutoffs = cutoffs;
+        event.firstMoveCutoffRate = cutoffs == 0 ? 0 : (double) total(CUTOFFS) / cutoffs;
+        event.commit();
+    }
+
+    @Name("com.kern.SearchIteration")
+    @Label("Search Iteration")
+    @Category({ "Kern", "Search" })
+    @Description("One completed iteration of iterative deepening")
+    @StackTrace(false)
+    static final class IterationEvent extends Event {
+        @Label("Search Thread")
+        int thread;
+
+        @Label("Depth")
+        int depth;
+
+        @Label("Score")
+        int score;
+
+        @Label("Nodes")
+        long nodes;
+
+        @Label("Best Move")
+        String bestMove;
+    }
+
+    @Name("com.kern.SearchStatistics")
+    @Label("Search Statistics")
+    @Category({ "Kern", "Search" })
+    @Description("Totals of all searches since the start")
+    @Period("1 s")
+    @StackTrace(false)
+    static final class StatisticsEvent extends Event {
+        @Label("Nodes")
+        long nodes;
+
+        @Label("Table Probes")
+        long tableProbes;
+
+        @Label("Table Hit Rate")
+        @Percentage
+        double tableHitRate;
+
+        @Label("Pawn Table Hit Rate")
+        @Percentage
+        double pawnHitRate;
+
+        @Label("Move Generations")
+        long generations;
+
+        @Label("Legality Checks")
+        long legalityChecks;
+
+        @Label("Cutoffs")
+        long cutoffs;
+
+        @Label("First Move Cutoff Rate")
+        @Percentage
+        double firstMoveCutoffRate;
+    }
+}
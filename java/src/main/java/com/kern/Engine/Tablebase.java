@@ -0,0 +1,356 @@
+package com.kern.Engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.kern.Logic.Attacks;
+import com.kern.Logic.Position;
+
+/**
+ * The Tablebase class probes endgame tables of up to {@link #MAX_MEN} men.
+ *
+ * <p>
+ * Every table holds one material set, named like {@code KQvKR}: the pieces
+ * of the stronger side, then those of the weaker side. For every position
+ * with either side to move it stores one byte: 0 for a draw, {@code m} in
+ * 1-127 when the side to move mates in {@code m} moves, {@code 128 + m}
+ * when it is mated in {@code m} moves. Tables are built by
+ * {@link TablebaseGenerator}.
+ * </p>
+ *
+ * <p>
+ * A table is indexed by the side to move, the square of the white king and
+ * the squares of the other men in the order of the name. The board is
+ * mirrored so that the white king stands on the files a-d, and in tables
+ * without pawns also flipped so that it stands in the triangle a1-d1-d4,
+ * which leaves 32 or 10 king squares instead of 64. A position with the
+ * colors the other way round, such as KvKQ, is probed in the table of its
+ * color-flipped twin.
+ * </p>
+ *
+ * <p>
+ * The files are memory-mapped, so opening a directory of tables reads
+ * nothing, and {@link #probe(Position)} is a few table lookups and one byte
+ * read. Tables assume that nobody can castle or capture en passant;
+ * positions where that is possible are not probed. The fifty-move rule is
+ * ignored.
+ * </p>
+ */
+public class Tablebase {
+    public static final int MAX_MEN = 4;
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+    public static final String EXTENSION = ".ktb";
+
+    // FILE FORMAT, a header then one byte per position
+    static final int HEADER_SIZE = 16;
+    static final int MAGIC = 'K' << 24 | 'T' << 16 | 'B' << 8 | '1';
+
+    // Piece letters indexed by type, in the order of table names
+    private static final String LETTERS = "PKQNBR";
+    static final String ORDER = "QRBNP";
+
+    // Tables by the non-king men they hold, see slot()
+    private static final int SLOTS = 11 * 11;
+
+    // BOARD SYMMETRY, the transformation that brings the white king to its region
+    private static final int MIRROR_FILES = 1;
+    private static final int MIRROR_RANKS = 2;
+    private static final int TRANSPOSE = 4;
+    private static final int[] TRANSFORM = new int[64];
+    private static final int[] TRIANGLE = new int[64];
+    static final int[] TRIANGLE_SQUARES = new int[10];
+
+    static {
+        int regions = 0;
+        for (int square = 0; square < 64; square++) {
+            int file = square & 7;
+            int rank = square >>> 3;
+            int transform = 0;
+            if (file > 3) {
+                transform |= MIRROR_FILES;
+                file = 7 - file;
+            }
+            if (rank > 3) {
+                transform |= MIRROR_RANKS;
+                rank = 7 - rank;
+            }
+            if (rank > file) {
+                transform |= TRANSPOSE;
+            }
+            TRANSFORM[square] = transform;
+
+            TRIANGLE[square] = -1;
+            if ((square & 7) <= 3 && (square >>> 3) <= (square & 7)) {
+                TRIANGLE[square] = regions;
+                TRIANGLE_SQUARES[regions++] = square;
+            }
+        }
+    }
+
+    /**
+     * One table: its men in index order and its positions.
+     */
+    static final class Table {
+        final String name;
+        final int[] codes;
+        final boolean pawns;
+        final ByteBuffer data;
+
+        Table(String name, int[] codes, ByteBuffer data) {
+            this.name = name;
+            this.codes = codes;
+            this.data = data;
+
+            boolean hasPawns = false;
+            for (int code : codes) {
+                hasPawns |= Position.type(code) == Position.PAWN;
+            }
+            this.pawns = hasPawns;
+        }
+
+        int kingRegions() {
+            return pawns ? 32 : 10;
+        }
+
+        int size() {
+            int size = 2 * kingRegions();
+            for (int i = 1; i < codes.length; i++) {
+                size *= 64;
+            }
+            return size;
+        }
+    }
+
+    private final Table[] tables = new Table[SLOTS];
+    private final boolean[] flipped = new boolean[SLOTS];
+    private int count;
+
+    Tablebase() {
+    }
+
+    /**
+     * Maps all tables of the directory.
+     */
+    public static Tablebase open(Path directory) throws IOException {
+        Tablebase tablebase = new Tablebase();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                tablebase.add(read(file));
+            }
+        }
+        return tablebase;
+    }
+
+    static Table read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+                throw new IOException("Not a tablebase file: " + file);
+            }
+
+            int[] codes = new int[data.get(4)];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = data.get(5 + i);
+            }
+            Table table = new Table(name(codes), codes, data);
+            if (data.limit() != HEADER_SIZE + table.size()) {
+                throw new IOException("Truncated tablebase file: " + file);
+            }
+            return table;
+        }
+    }
+
+    void add(Table table) {
+        int slot = slot(table.codes, false);
+        tables[slot] = table;
+        flipped[slot] = false;
+
+        // Symmetric sets such as KRvKR need no flipped entry
+        int flippedSlot = slot(table.codes, true);
+        if (flippedSlot != slot) {
+            tables[flippedSlot] = table;
+            flipped[flippedSlot] = true;
+        }
+        count++;
+    }
+
+    /**
+     * Returns the number of tables.
+     */
+    public int size() {
+        return count;
+    }
+
+    // MATERIAL
+
+    /**
+     * Returns the men of a material set such as {@code KQvKR} in index
+     * order: the white king, the black king, then the others of the name.
+     */
+    static int[] codes(String name) {
+        int split = name.indexOf('v');
+        if (split < 1 || name.charAt(0) != 'K' || split + 1 >= name.length() || name.charAt(split + 1) != 'K'
+                || name.length() - 1 > MAX_MEN) {
+            throw new IllegalArgumentException("Invalid material: " + name);
+        }
+
+        int[] codes = new int[name.length() - 1];
+        codes[0] = Position.code(Position.WHITE, Position.KING);
+        codes[1] = Position.code(Position.BLACK, Position.KING);
+        int men = 2;
+        for (int i = 1; i < name.length(); i++) {
+            if (i == split || i == split + 1) {
+                continue;
+            }
+            int type = LETTERS.indexOf(name.charAt(i));
+            if (type < 0 || type == Position.KING) {
+                throw new IllegalArgumentException("Invalid material: " + name);
+            }
+            codes[men++] = Position.code(i < split ? Position.WHITE : Position.BLACK, type);
+        }
+        return codes;
+    }
+
+    static String name(int[] codes) {
+        StringBuilder white = new StringBuilder("K");
+        StringBuilder black = new StringBuilder("K");
+        for (int i = 2; i < codes.length; i++) {
+            char letter = LETTERS.charAt(Position.type(codes[i]));
+            (Position.color(codes[i]) == Position.WHITE ? white : black).append(letter);
+        }
+        return white + "v" + black;
+    }
+
+    /**
+     * Returns the slot of the material: the non-king men, sorted, as at most
+     * two numbers of 1-10. With {@code flip} the colors are swapped.
+     */
+    private static int slot(int[] codes, boolean flip) {
+        int first = 0;
+        int second = 0;
+        for (int i = 2; i < codes.length; i++) {
+            int man = man(flip ? swap(codes[i]) : codes[i]);
+            if (first == 0) {
+                first = man;
+            } else {
+                second = man;
+            }
+        }
+        return Math.min(first, second) * 11 + Math.max(first, second);
+    }
+
+    private static int man(int code) {
+        int type = Position.type(code);
+        int number = type == Position.PAWN ? 1 : type;
+        return number + (Position.color(code) == Position.WHITE ? 0 : 5);
+    }
+
+    static int swap(int code) {
+        return code < 6 ? code + 6 : code - 6;
+    }
+
+    // INDEXING
+
+    static int transform(Table table, int whiteKing) {
+        return table.pawns ? (whiteKing & 7) > 3 ? MIRROR_FILES : 0 : TRANSFORM[whiteKing];
+    }
+
+    static int apply(int transform, int square) {
+        if ((transform & MIRROR_FILES) != 0) {
+            square ^= 7;
+        }
+        if ((transform & MIRROR_RANKS) != 0) {
+            square ^= 56;
+        }
+        if ((transform & TRANSPOSE) != 0) {
+            square = (square & 7) << 3 | square >>> 3;
+        }
+        return square;
+    }
+
+    /**
+     * Returns the king region of a white king already brought into it.
+     */
+    static int region(Table table, int whiteKing) {
+        return table.pawns ? (whiteKing >>> 3) * 4 + (whiteKing & 7) : TRIANGLE[whiteKing];
+    }
+
+    static int regionSquare(Table table, int region) {
+        return table.pawns ? (region >>> 2) * 8 + (region & 3) : TRIANGLE_SQUARES[region];
+    }
+
+    /**
+     * Returns the distance to mate of the position as a search score: 0 for a
+     * draw, {@code MATE - plies} when the side to move mates in that many
+     * plies, {@code plies - MATE} when it is mated. Returns {@link #UNKNOWN}
+     * when there is no table for the position.
+     */
+    public int probe(Position position) {
+        if (Long.bitCount(position.occupied) > MAX_MEN || position.castlingRights != 0) {
+            return UNKNOWN;
+        }
+
+        // En passant changes the outcome but is not part of the index
+        int us = position.sideToMove;
+        if (position.enPassantSquare >= 0
+                && (Attacks.PAWN[1 - us][position.enPassantSquare] & position.pieces(us, Position.PAWN)) != 0) {
+            return UNKNOWN;
+        }
+
+        int first = 0;
+        int second = 0;
+        for (int code = 0; code < 12; code++) {
+            if (Position.type(code) == Position.KING) {
+                continue;
+            }
+            for (long bits = position.pieces[code]; bits != 0; bits &= bits - 1) {
+                if (first == 0) {
+                    first = man(code);
+                } else {
+                    second = man(code);
+                }
+            }
+        }
+        int slot = Math.min(first, second) * 11 + Math.max(first, second);
+        Table table = tables[slot];
+        if (table == null) {
+            return UNKNOWN;
+        }
+
+        // Probe a flipped position as if the colors were the other way round
+        boolean flip = flipped[slot];
+        int flipSquare = flip ? 56 : 0;
+        int whiteKing = position.kingSquare(flip ? Position.BLACK : Position.WHITE) ^ flipSquare;
+        int transform = transform(table, whiteKing);
+
+        int index = (us ^ (flip ? 1 : 0)) * table.kingRegions() + region(table, apply(transform, whiteKing));
+        long used = 0;
+        for (int i = 1; i < table.codes.length; i++) {
+            int code = flip ? swap(table.codes[i]) : table.codes[i];
+            long bits = position.pieces[code] & ~used;
+            int square = Long.numberOfTrailingZeros(bits);
+            used |= Position.bit(square);
+            index = index * 64 + apply(transform, square ^ flipSquare);
+        }
+
+        return score(table.data.get(HEADER_SIZE + index) & 0xFF);
+    }
+
+    /**
+     * Turns a stored byte into a search score.
+     */
+    static int score(int value) {
+        if (value == 0) {
+            return 0;
+        }
+        if (value < 128) {
+            return Search.MATE - (2 * value - 1);
+        }
+        return 2 * (value - 128) - Search.MATE;
+    }
+}
@@ -0,0 +1,585 @@
+package com.kern.Engine;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.kern.Logic.Attacks;
+import com.kern.Logic.Move;
+import com.kern.Logic.MoveGenerator;
+import com.kern.Logic.Position;
+
+/**
+ * The TablebaseGenerator class builds the tables of {@link Tablebase} by
+ * retrograde analysis.
+ *
+ * <p>
+ * A table is solved on all {@code 2 * 64^men} placements of its men, with
+ * either side to move, before the symmetric half is written out. First every
+ * position is looked at once, in parallel: positions that cannot occur are
+ * dropped, mates and stalemates are final, and moves that capture or promote
+ * are scored at once from the smaller tables built before. Every other move
+ * stays in the table and is only counted.
+ * </p>
+ *
+ * <p>
+ * Then the positions are resolved in order of their distance to mate, one
+ * ply at a time. Once a position is lost, every position with a move into
+ * it is won one ply later. Once a position is won, its predecessors lose one
+ * of their moves; a predecessor whose moves are all lost this way is lost
+ * one ply after its longest defence. The predecessors are found by taking
+ * moves back, which needs no move generation. The positions of one distance
+ * are resolved in parallel with atomic updates, so all cores are used. What
+ * is still open at the end is a draw.
+ * </p>
+ *
+ * <p>
+ * Run it with a directory and optionally the material sets to build, for
+ * example {@code TablebaseGenerator tables KQvK KBNvK}; without sets it
+ * builds all of up to {@link Tablebase#MAX_MEN} men. The smaller sets a table
+ * converts into are built first, and existing files are kept.
+ * </p>
+ */
+public final class TablebaseGenerator {
+    // STATE of a position during the analysis
+    private static final byte OPEN = 0;
+    private static final byte WIN = 1;
+    private static final byte LOSS = 2;
+    private static final byte DRAW = 3;
+    private static final byte INVALID = 4;
+
+    // Distances are stored in plies in one byte
+    private static final int MAX_PLIES = 254;
+
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private static final VarHandle BYTES = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    private final String name;
+    private final Tablebase tablebase;
+    private final ForkJoinPool pool;
+
+    private final int[] codes;
+    private final int men;
+    private final int size;
+
+    // PER POSITION: state, distance in plies (also of the best win found so far),
+    // moves not known to lose and the longest defence by converting
+    private final byte[] state;
+    private final byte[] distance;
+    private final byte[] remaining;
+    private final byte[] lossAt;
+
+    // Positions to resolve by distance, as index * 2 + 1 for a loss
+    private final IntList[] buckets = new IntList[MAX_PLIES + 2];
+
+    private TablebaseGenerator(String name, Tablebase tablebase, ForkJoinPool pool) {
+        this.name = name;
+        this.tablebase = tablebase;
+        this.pool = pool;
+
+        codes = Tablebase.codes(name);
+        men = codes.length;
+        size = 2 << (6 * men);
+        state = new byte[size];
+        distance = new byte[size];
+        remaining = new byte[size];
+        lossAt = new byte[size];
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: TablebaseGenerator <directory> [material...]");
+            return;
+        }
+
+        List<String> materials = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : allMaterials();
+        generate(Paths.get(args[0]), materials, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns every material set of three or four men.
+     */
+    public static List<String> allMaterials() {
+        List<String> materials = new ArrayList<>();
+        String order = Tablebase.ORDER;
+        for (int i = 0; i < order.length(); i++) {
+            materials.add("K" + order.charAt(i) + "vK");
+        }
+        for (int i = 0; i < order.length(); i++) {
+            for (int j = i; j < order.length(); j++) {
+                materials.add("K" + order.charAt(i) + order.charAt(j) + "vK");
+                materials.add("K" + order.charAt(i) + "vK" + order.charAt(j));
+            }
+        }
+        return materials;
+    }
+
+    /**
+     * Builds the tables of the material sets and of the smaller sets they
+     * convert into, skipping those whose file exists, and returns all of them.
+     */
+    public static Tablebase generate(Path directory, Collection<String> materials, ForkJoinPool pool)
+            throws IOException {
+        Files.createDirectories(directory);
+
+        Set<String> needed = new LinkedHashSet<>();
+        for (String material : materials) {
+            addWithConversions(normalize(material), needed);
+        }
+        List<String> order = new ArrayList<>(needed);
+        order.sort(Comparator.comparingInt(String::length).thenComparingLong(TablebaseGenerator::pawns)
+                .thenComparing(Comparator.naturalOrder()));
+
+        Tablebase tablebase = new Tablebase();
+        for (String material : order) {
+            Path file = directory.resolve(material + Tablebase.EXTENSION);
+            if (!Files.exists(file)) {
+                long startTime = System.nanoTime();
+                TablebaseGenerator generator = new TablebaseGenerator(material, tablebase, pool);
+                generator.solve();
+                String summary = generator.write(file);
+                System.out.println(summary + " in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+            }
+            tablebase.add(Tablebase.read(file));
+        }
+        return tablebase;
+    }
+
+    private static long pawns(String material) {
+        return material.chars().filter(c -> c == 'P').count();
+    }
+
+    // MATERIAL SETS
+
+    /**
+     * Returns the name of the set with the stronger side first and the men of
+     * each side in the order QRBNP, for example KQvKR for KRvKQ.
+     */
+    static String normalize(String material) {
+        Tablebase.codes(material);
+        int split = material.indexOf('v');
+        String white = sorted(material.substring(1, split));
+        String black = sorted(material.substring(split + 2));
+        return stronger(black, white) ? "K" + black + "vK" + white : "K" + white + "vK" + black;
+    }
+
+    private static String sorted(String men) {
+        StringBuilder sorted = new StringBuilder(men.length());
+        for (char letter : Tablebase.ORDER.toCharArray()) {
+            for (int i = 0; i < men.length(); i++) {
+                if (men.charAt(i) == letter) {
+                    sorted.append(letter);
+                }
+            }
+        }
+        return sorted.toString();
+    }
+
+    private static boolean stronger(CharSequence side, CharSequence other) {
+        if (side.length() != other.length()) {
+            return side.length() > other.length();
+        }
+        for (int i = 0; i < side.length(); i++) {
+            int difference = Tablebase.ORDER.indexOf(side.charAt(i)) - Tablebase.ORDER.indexOf(other.charAt(i));
+            if (difference != 0) {
+                return difference < 0;
+            }
+        }
+        return false;
+    }
+
+    private static void addWithConversions(String material, Set<String> needed) {
+        if (!needed.add(material)) {
+            return;
+        }
+
+        // Captures remove a man, promotions replace a pawn; two kings are a draw
+        String white = material.substring(1, material.indexOf('v'));
+        String black = material.substring(material.indexOf('v') + 2);
+        for (int side = 0; side < 2; side++) {
+            String men = side == 0 ? white : black;
+            for (int i = 0; i < men.length(); i++) {
+                String captured = men.substring(0, i) + men.substring(i + 1);
+                if (captured.length() + (side == 0 ? black : white).length() > 0) {
+                    addWithConversions(normalize(side == 0 ? "K" + captured + "vK" + black
+                            : "K" + white + "vK" + captured), needed);
+                }
+                if (men.charAt(i) == 'P') {
+                    for (char piece : "QRBN".toCharArray()) {
+                        String promoted = men.substring(0, i) + piece + men.substring(i + 1);
+                        addWithConversions(normalize(side == 0 ? "K" + promoted + "vK" + black
+                                : "K" + white + "vK" + promoted), needed);
+                    }
+                }
+            }
+        }
+    }
+
+    // INDEXING, the side to move and then one square per man, 6 bits each
+
+    private int square(int index, int man) {
+        return (index >>> (6 * (men - 1 - man))) & 63;
+    }
+
+    private int withSquare(int index, int man, int square) {
+        int shift = 6 * (men - 1 - man);
+        return index & ~(63 << shift) | square << shift;
+    }
+
+    // SOLVING
+
+    private void solve() {
+        pool.submit(() -> IntStream.range(0, (size + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel()
+                .forEach(this::initialize)).join();
+
+        for (int plies = 0; plies < buckets.length; plies++) {
+            IntList bucket = buckets[plies];
+            if (bucket == null) {
+                continue;
+            }
+            buckets[plies] = null;
+
+            int resolved = plies;
+            pool.submit(() -> IntStream.range(0, (bucket.size + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel()
+                    .forEach(chunk -> resolve(bucket, chunk, resolved))).join();
+        }
+    }
+
+    /**
+     * Looks at every position of one chunk once.
+     */
+    private void initialize(int chunk) {
+        Position position = new Position();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        IntList[] found = new IntList[buckets.length];
+
+        int end = Math.min(size, (chunk + 1) * CHUNK_SIZE);
+        for (int index = chunk * CHUNK_SIZE; index < end; index++) {
+            if (!setUp(position, index)) {
+                state[index] = INVALID;
+                continue;
+            }
+
+            int count = MoveGenerator.generate(position, moves);
+            if (count == 0) {
+                if (position.inCheck()) {
+                    add(found, 0, index * 2 + 1);
+                } else {
+                    state[index] = DRAW;
+                }
+                continue;
+            }
+
+            int inTable = 0;
+            int winAt = 0;
+            int longestDefence = 0;
+            boolean cannotLose = false;
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                if (!Move.isCapture(move) && !Move.isPromotion(move)) {
+                    inTable++;
+                    continue;
+                }
+
+                position.makeMove(move);
+                int score = convert(position);
+                position.unmakeMove(move);
+
+                if (score == 0) {
+                    cannotLose = true;
+                } else if (score < 0) {
+                    int plies = score + Search.MATE + 1;
+                    winAt = winAt == 0 ? plies : Math.min(winAt, plies);
+                } else {
+                    longestDefence = Math.max(longestDefence, Search.MATE - score + 1);
+                }
+            }
+
+            remaining[index] = (byte) (inTable + (cannotLose || winAt != 0 ? 1 : 0));
+            lossAt[index] = (byte) longestDefence;
+            if (winAt != 0) {
+                distance[index] = (byte) winAt;
+                add(found, winAt, index * 2);
+            } else if (remaining[index] == 0) {
+                add(found, longestDefence, index * 2 + 1);
+            }
+        }
+        merge(found);
+    }
+
+    /**
+     * Places the men of the index on the board and returns whether the
+     * position can occur: no two men on one square, no pawn on the first or
+     * last rank and the side that just moved not in check.
+     */
+    private boolean setUp(Position position, int index) {
+        position.clear();
+        for (int man = 0; man < men; man++) {
+            int square = square(index, man);
+            int code = codes[man];
+            if (!position.isEmpty(square)
+                    || Position.type(code) == Position.PAWN && (square < 8 || square >= 56)) {
+                return false;
+            }
+            position.put(Position.color(code), Position.type(code), square);
+        }
+
+        int us = index >>> (6 * men);
+        position.sideToMove = us;
+        position.key = position.computeKey();
+        return !position.isAttacked(position.kingSquare(1 - us), us);
+    }
+
+    /**
+     * Returns the score of a position after a capture or promotion from the
+     * smaller tables.
+     */
+    private int convert(Position position) {
+        if (Long.bitCount(position.occupied) == 2) {
+            return 0;
+        }
+
+        int score = tablebase.probe(position);
+        if (score == Tablebase.UNKNOWN) {
+            throw new IllegalStateException("No table for a conversion of " + name);
+        }
+        return score;
+    }
+
+    /**
+     * Resolves one chunk of the positions at the given distance and passes
+     * the result on to their predecessors.
+     */
+    private void resolve(IntList bucket, int chunk, int plies) {
+        IntList[] found = new IntList[buckets.length];
+
+        int end = Math.min(bucket.size, (chunk + 1) * CHUNK_SIZE);
+        for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+            int index = bucket.values[i] >>> 1;
+            boolean lost = (bucket.values[i] & 1) != 0;
+
+            // A win may have been queued again at a shorter distance
+            if (!lost && (distance[index] & 0xFF) != plies
+                    || !BYTES.compareAndSet(state, index, OPEN, lost ? LOSS : WIN)) {
+                continue;
+            }
+            distance[index] = (byte) plies;
+
+            forEachPredecessor(index, lost, plies, found);
+        }
+        merge(found);
+    }
+
+    private void forEachPredecessor(int index, boolean lost, int plies, IntList[] found) {
+        int us = index >>> (6 * men);
+        int them = 1 - us;
+        long occupied = 0;
+        for (int man = 0; man < men; man++) {
+            occupied |= Position.bit(square(index, man));
+        }
+        int ourKing = square(index, 0);
+        if (us == Position.BLACK) {
+            ourKing = square(index, 1);
+        }
+
+        for (int man = 0; man < men; man++) {
+            int code = codes[man];
+            if (Position.color(code) != them) {
+                continue;
+            }
+
+            int square = square(index, man);
+            int type = Position.type(code);
+            long origins;
+            if (type == Position.PAWN) {
+                origins = pawnOrigins(them, square, occupied);
+            } else {
+                origins = Attacks.of(them, type, square, occupied) & ~occupied;
+            }
+
+            for (; origins != 0; origins &= origins - 1) {
+                int origin = Long.numberOfTrailingZeros(origins);
+                long before = occupied ^ Position.bit(square) ^ Position.bit(origin);
+                if (attacked(index, ourKing, man, origin, them, before)) {
+                    continue;
+                }
+
+                int predecessor = withSquare(index, man, origin) ^ (1 << (6 * men));
+                if (state[predecessor] != OPEN) {
+                    continue;
+                }
+
+                if (lost) {
+                    winIn(predecessor, plies + 1, found);
+                } else if (decrement(predecessor) == 0) {
+                    add(found, Math.max(plies + 1, lossAt[predecessor] & 0xFF), predecessor * 2 + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the squares a pawn of {@code color} on {@code square} came from
+     * with a move that was not a capture.
+     */
+    private static long pawnOrigins(int color, int square, long occupied) {
+        int step = color == Position.WHITE ? -8 : 8;
+        int origin = square + step;
+        if (origin < 8 || origin >= 56 || (occupied & Position.bit(origin)) != 0) {
+            return 0;
+        }
+
+        long origins = Position.bit(origin);
+        int rank = square >>> 3;
+        if (rank == (color == Position.WHITE ? 3 : 4) && (occupied & Position.bit(origin + step)) == 0) {
+            origins |= Position.bit(origin + step);
+        }
+        return origins;
+    }
+
+    /**
+     * Returns whether the king on {@code king} is attacked by the men of
+     * {@code color} with {@code moved} standing on {@code origin}.
+     */
+    private boolean attacked(int index, int king, int moved, int origin, int color, long occupied) {
+        for (int man = 0; man < men; man++) {
+            int code = codes[man];
+            if (Position.color(code) != color) {
+                continue;
+            }
+            int square = man == moved ? origin : square(index, man);
+            if ((Attacks.of(color, Position.type(code), square, occupied) & Position.bit(king)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int decrement(int index) {
+        while (true) {
+            byte current = (byte) BYTES.getVolatile(remaining, index);
+            if (BYTES.compareAndSet(remaining, index, current, (byte) (current - 1))) {
+                return current - 1;
+            }
+        }
+    }
+
+    private void winIn(int index, int plies, IntList[] found) {
+        while (true) {
+            byte current = distance[index];
+            if (current != 0 && (current & 0xFF) <= plies) {
+                return;
+            }
+            if (BYTES.compareAndSet(distance, index, current, (byte) plies)) {
+                add(found, plies, index * 2);
+                return;
+            }
+        }
+    }
+
+    private void add(IntList[] found, int plies, int item) {
+        if (plies > MAX_PLIES) {
+            throw new IllegalStateException(name + " has mates longer than " + MAX_PLIES + " plies");
+        }
+        if (found[plies] == null) {
+            found[plies] = new IntList();
+        }
+        found[plies].add(item);
+    }
+
+    private synchronized void merge(IntList[] found) {
+        for (int plies = 0; plies < found.length; plies++) {
+            if (found[plies] != null) {
+                if (buckets[plies] == null) {
+                    buckets[plies] = new IntList();
+                }
+                buckets[plies].addAll(found[plies]);
+            }
+        }
+    }
+
+    // OUTPUT
+
+    /**
+     * Writes the symmetric half of the table and returns a summary of it.
+     */
+    private String write(Path file) throws IOException {
+        Tablebase.Table table = new Tablebase.Table(name, codes, null);
+        int tableSize = table.size();
+        ByteBuffer data = ByteBuffer.allocate(Tablebase.HEADER_SIZE + tableSize);
+
+        data.putInt(Tablebase.MAGIC);
+        data.put((byte) men);
+        for (int code : codes) {
+            data.put((byte) code);
+        }
+        data.position(Tablebase.HEADER_SIZE);
+
+        long wins = 0;
+        long losses = 0;
+        long draws = 0;
+        int longest = 0;
+        int perRegion = tableSize / 2 / table.kingRegions();
+        for (int fileIndex = 0; fileIndex < tableSize; fileIndex++) {
+            int us = fileIndex / (tableSize / 2);
+            int region = fileIndex % (tableSize / 2) / perRegion;
+            int index = us << (6 * men) | Tablebase.regionSquare(table, region) << (6 * (men - 1))
+                    | fileIndex % perRegion;
+
+            int plies = distance[index] & 0xFF;
+            byte value = 0;
+            if (state[index] == WIN) {
+                value = (byte) ((plies + 1) / 2);
+                wins++;
+                longest = Math.max(longest, plies);
+            } else if (state[index] == LOSS) {
+                value = (byte) (128 + plies / 2);
+                losses++;
+            } else if (state[index] != INVALID) {
+                draws++;
+            }
+            data.put(value);
+        }
+
+        Files.write(file, data.array());
+        return String.format("%s: %d wins, %d draws, %d losses, longest mate %d moves", name, wins, draws, losses,
+                (longest + 1) / 2);
+    }
+
+    /**
+     * A growable list of ints.
+     */
+    private static final class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.kern.Engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The TranspositionTable class caches search results per position.
+ *
+ * <p>
+ * The table lives off-heap in direct {@link ByteBuffer}s, so even tables of
+ * several gigabytes add nothing for the garbage collector to trace or copy
+ * (start the JVM with {@code -XX:MaxDirectMemorySize} large enough for the
+ * table). Entries are grouped in buckets of four, one 64 byte cache line
+ * each.
+ * </p>
+ *
+ * <p>
+ * An entry is two 64-bit words: the position key {@code XOR} the data, and
+ * the data itself. The data packs:
+ * <ul>
+ * <li>bits 0-19 - the best move.</li>
+ * <li>bits 20-35 - the score.</li>
+ * <li>bits 36-43 - the search depth.</li>
+ * <li>bits 44-45 - the bound ({@link #EXACT}, {@link #LOWER} or
+ * {@link #UPPER}).</li>
+ * <li>bits 46-51 - the age, the search the entry was written in.</li>
+ * </ul>
+ * Both words are read and written without locks. When two threads write the
+ * same entry at once, the words may come from different writes; the
+ * {@code XOR} then no longer gives back the key and the probe is simply a
+ * miss.
+ * </p>
+ *
+ * <p>
+ * When a bucket is full, the entry with the lowest depth is replaced, and
+ * entries left over from older searches count as shallower the older they
+ * are.
+ * </p>
+ */
+public class TranspositionTable {
+    // BOUNDS
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    private static final int ENTRY_SIZE = 16;
+    private static final int BUCKET_SIZE = 4;
+    private static final int BUCKET_BYTES = ENTRY_SIZE * BUCKET_SIZE;
+    private static final int CHUNK_SHIFT = 30;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+
+    private ByteBuffer[] chunks;
+    private long bucketMask;
+    private int bucketsPerChunkShift;
+    private int age;
+
+    public TranspositionTable(int megabytes) {
+        resize(megabytes);
+    }
+
+    /**
+     * Allocates a table of at most {@code megabytes}, rounded down to a power of
+     * two number of buckets. The previous content is dropped.
+     */
+    public void resize(int megabytes) {
+        long bytes = Math.max(1L, megabytes) << 20;
+        long buckets = Long.highestOneBit(bytes / BUCKET_BYTES);
+
+        long chunkBytes = Math.min(buckets * BUCKET_BYTES, 1L << CHUNK_SHIFT);
+        int chunkCount = (int) (buckets * BUCKET_BYTES / chunkBytes);
+
+        // Let the old table be collected before the new one is allocated
+        chunks = null;
+        chunks = new ByteBuffer[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            chunks[i] = ByteBuffer.allocateDirect((int) chunkBytes).order(ByteOrder.nativeOrder());
+        }
+
+        bucketMask = buckets - 1;
+        bucketsPerChunkShift = Long.numberOfTrailingZeros(chunkBytes / BUCKET_BYTES);
+        age = 0;
+    }
+
+    public void clear() {
+        for (ByteBuffer chunk : chunks) {
+            for (int offset = 0; offset < chunk.capacity(); offset += 8) {
+                LONGS.setOpaque(chunk, offset, 0L);
+            }
+        }
+        age = 0;
+    }
+
+    /**
+     * Starts a new search, entries of earlier searches become replaceable.
+     */
+    public void newSearch() {
+        age = (age + 1) & 63;
+    }
+
+    /**
+     * Returns the data stored for the key, or 0 when the position is not in the
+     * table.
+     */
+    public long probe(long key) {
+        long bucket = key & bucketMask;
+        ByteBuffer chunk = chunks[(int) (bucket >>> bucketsPerChunkShift)];
+        int base = (int) ((bucket & ((1L << bucketsPerChunkShift) - 1)) * BUCKET_BYTES);
+
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            int offset = base + i * ENTRY_SIZE;
+            long data = (long) LONGS.getOpaque(chunk, offset + 8);
+            if (data != 0 && ((long) LONGS.getOpaque(chunk, offset) ^ data) == key) {
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        long bucket = key & bucketMask;
+        ByteBuffer chunk = chunks[(int) (bucket >>> bucketsPerChunkShift)];
+        int base = (int) ((bucket & ((1L << bucketsPerChunkShift) - 1)) * BUCKET_BYTES);
+
+        int replace = base;
+        int lowest = Integer.MAX_VALUE;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            int offset = base + i * ENTRY_SIZE;
+            long data = (long) LONGS.getOpaque(chunk, offset + 8);
+
+            if (data == 0 || ((long) LONGS.getOpaque(chunk, offset) ^ data) == key) {
+                // Keep the old best move when the new result has none
+                if (data != 0 && move == 0) {
+                    move = move(data);
+                }
+                replace = offset;
+                break;
+            }
+
+            int value = depth(data) - 8 * ((age - age(data)) & 63);
+            if (value < lowest) {
+                lowest = value;
+                replace = offset;
+            }
+        }
+
+        long data = pack(move, score, depth, bound, age);
+        LONGS.setOpaque(chunk, replace, key ^ data);
+        LONGS.setOpaque(chunk, replace + 8, data);
+    }
+
+    /**
+     * Returns how full the table is in permille, sampled from the first
+     * thousand entries.
+     */
+    public int hashfull() {
+        ByteBuffer chunk = chunks[0];
+        int sampled = Math.min(1000, chunk.capacity() / ENTRY_SIZE);
+        int used = 0;
+
+        for (int i = 0; i < sampled; i++) {
+            long data = (long) LONGS.getOpaque(chunk, i * ENTRY_SIZE + 8);
+            if (data != 0 && age(data) == age) {
+                used++;
+            }
+        }
+        return used * 1000 / sampled;
+    }
+
+    private static long pack(int move, int score, int depth, int bound, int age) {
+        return (move & 0xFFFFFL)
+                | ((score & 0xFFFFL) << 20)
+                | ((long) Math.max(0, Math.min(255, depth)) << 36)
+                | ((long) bound << 44)
+                | ((long) age << 46);
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0xFFFFF);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> 20);
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> 36) & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> 44) & 3);
+    }
+
+    private static int age(long data) {
+        return (int) ((data >>> 46) & 63);
+    }
+}
@@ -0,0 +1,365 @@
+package com.kern.Engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import com.kern.Logic.Game;
+import com.kern.Logic.Move;
+import com.kern.Logic.Position;
+import com.kern.Notation.Fen;
+import com.kern.Notation.PolyglotBook;
+
+/**
+ * The Uci class plays through the Universal Chess Interface: it reads the
+ * commands of a GUI or tournament manager line by line and answers on the
+ * output, without opening a window.
+ *
+ * <p>
+ * Commands are read on the calling thread, the {@link Engine} searches on
+ * its own threads, so {@code stop}, {@code ponderhit} and {@code isready} are
+ * handled while it thinks. The search looks at its stop signal every few
+ * thousand nodes, so {@code bestmove} follows {@code stop} within a few
+ * milliseconds.
+ * </p>
+ *
+ * <p>
+ * A clock given to {@code go} is turned into a time limit by
+ * {@link SearchLimits#clock(long, long, int)}. {@code go ponder} and
+ * {@code go infinite} search without one; their result is held back until
+ * {@code stop}, or after {@code ponderhit} the search gets the time the clock
+ * would have allowed.
+ * </p>
+ *
+ * <p>
+ * Options: Hash, Threads, Ponder, OwnBook with BookFile, TablebasePath and
+ * EvalFile.
+ * </p>
+ */
+public class Uci {
+    private static final String NAME = "Chess";
+    private static final String AUTHOR = "Kern";
+
+    private final BufferedReader in;
+    private final PrintStream out;
+    private final Engine engine = new Engine();
+    private final Game game = new Game();
+
+    private boolean ownBook;
+    private PolyglotBook book;
+
+    // STATE OF THE CURRENT SEARCH, guarded by this
+    private boolean searching;
+    private boolean waitForStop;
+    private SearchResult heldResult;
+    private long ponderTimeMillis;
+
+    public Uci(InputStream in, PrintStream out) {
+        this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.out = out;
+        engine.setListener(this::sendInfo);
+    }
+
+    /**
+     * Reads commands until {@code quit} or the end of the input.
+     */
+    public void run() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] tokens = line.trim().split("\\s+");
+            if (tokens[0].equals("quit")) {
+                break;
+            }
+
+            try {
+                handle(tokens);
+            } catch (IllegalArgumentException | IOException e) {
+                send("info string " + e.getMessage());
+            }
+        }
+        engine.stop();
+    }
+
+    private void handle(String[] tokens) throws IOException {
+        switch (tokens[0]) {
+            case "uci":
+                send("id name " + NAME);
+                send("id author " + AUTHOR);
+                send("option name Hash type spin default " + Engine.DEFAULT_HASH_MB + " min 1 max 4096");
+                send("option name Threads type spin default 1 min 1 max 256");
+                send("option name Ponder type check default false");
+                send("option name OwnBook type check default false");
+                send("option name BookFile type string default <empty>");
+                send("option name TablebasePath type string default <empty>");
+                send("option name EvalFile type string default <empty>");
+                send("uciok");
+                break;
+            case "isready":
+                send("readyok");
+                break;
+            case "setoption":
+                setOption(tokens);
+                break;
+            case "ucinewgame":
+                engine.newGame();
+                game.reset();
+                break;
+            case "position":
+                setPosition(tokens);
+                break;
+            case "go":
+                go(tokens);
+                break;
+            case "stop":
+                stop();
+                break;
+            case "ponderhit":
+                ponderHit();
+                break;
+            default:
+                // Unknown commands are ignored, as the protocol asks
+                break;
+        }
+    }
+
+    // setoption name <name> value <value>, names and values may contain spaces
+    private void setOption(String[] tokens) throws IOException {
+        int valueIndex = indexOf(tokens, "value");
+        String name = join(tokens, 2, valueIndex < 0 ? tokens.length : valueIndex);
+        String value = valueIndex < 0 ? "" : join(tokens, valueIndex + 1, tokens.length);
+        boolean empty = value.isEmpty() || value.equals("<empty>");
+
+        synchronized (this) {
+            if (searching) {
+                throw new IllegalArgumentException("options cannot be changed while searching");
+            }
+        }
+
+        switch (name.toLowerCase()) {
+            case "hash":
+                engine.setHashSize(Integer.parseInt(value));
+                break;
+            case "threads":
+                engine.setThreads(Integer.parseInt(value));
+                break;
+            case "ownbook":
+                ownBook = Boolean.parseBoolean(value);
+                engine.setBook(ownBook ? book : null);
+                break;
+            case "bookfile":
+                book = empty ? null : PolyglotBook.open(Paths.get(value));
+                engine.setBook(ownBook ? book : null);
+                break;
+            case "tablebasepath":
+                engine.setTablebase(empty ? null : Tablebase.open(Paths.get(value)));
+                break;
+            case "evalfile":
+                engine.setNetwork(empty ? null : Network.load(Paths.get(value)));
+                break;
+            default:
+                // Ponder needs nothing, the GUI decides when to ponder
+                break;
+        }
+    }
+
+    // position [startpos | fen <fields>] [moves <move>...]
+    private void setPosition(String[] tokens) {
+        int movesIndex = indexOf(tokens, "moves");
+        int end = movesIndex < 0 ? tokens.length : movesIndex;
+
+        if (tokens.length > 1 && tokens[1].equals("fen")) {
+            game.load(join(tokens, 2, end));
+        } else {
+            game.load(Fen.START);
+        }
+
+        for (int i = end + 1; movesIndex >= 0 && i < tokens.length; i++) {
+            int move = parseMove(tokens[i]);
+            if (move == Move.NONE || !game.play(move)) {
+                throw new IllegalArgumentException("illegal move " + tokens[i]);
+            }
+        }
+    }
+
+    // Coordinate notation as written by Move.toString, for example e7e8q
+    private int parseMove(String text) {
+        if (text.length() < 4 || text.length() > 5) {
+            return Move.NONE;
+        }
+
+        int from = parseSquare(text, 0);
+        int to = parseSquare(text, 2);
+        if (from < 0 || to < 0) {
+            return Move.NONE;
+        }
+
+        int promotion = -1;
+        if (text.length() == 5) {
+            promotion = "  qnbr".indexOf(text.charAt(4));
+            if (promotion < Position.QUEEN) {
+                return Move.NONE;
+            }
+        }
+        return game.findMove(from, to, promotion);
+    }
+
+    private static int parseSquare(String text, int index) {
+        int file = text.charAt(index) - 'a';
+        int rank = text.charAt(index + 1) - '1';
+        return file < 0 || file > 7 || rank < 0 || rank > 7 ? -1 : rank * 8 + file;
+    }
+
+    private void go(String[] tokens) {
+        boolean white = game.getSideToMove() == Position.WHITE;
+        long remaining = 0;
+        long increment = 0;
+        int movesToGo = 0;
+        boolean ponder = false;
+        boolean infinite = false;
+        SearchLimits limits = new SearchLimits();
+
+        for (int i = 1; i < tokens.length; i++) {
+            String value = i + 1 < tokens.length ? tokens[i + 1] : "0";
+            switch (tokens[i]) {
+                case "wtime":
+                    remaining = white ? Long.parseLong(value) : remaining;
+                    break;
+                case "btime":
+                    remaining = white ? remaining : Long.parseLong(value);
+                    break;
+                case "winc":
+                    increment = white ? Long.parseLong(value) : increment;
+                    break;
+                case "binc":
+                    increment = white ? increment : Long.parseLong(value);
+                    break;
+                case "movestogo":
+                    movesToGo = Integer.parseInt(value);
+                    break;
+                case "movetime":
+                    limits.timeMillis = Math.max(1, Long.parseLong(value));
+                    break;
+                case "depth":
+                    limits.depth = Integer.parseInt(value);
+                    break;
+                case "nodes":
+                    limits.nodes = Long.parseLong(value);
+                    break;
+                case "ponder":
+                    ponder = true;
+                    continue;
+                case "infinite":
+                    infinite = true;
+                    continue;
+                default:
+                    continue;
+            }
+            i++;
+        }
+
+        if (remaining > 0 && limits.timeMillis == 0) {
+            limits.timeMillis = SearchLimits.clock(remaining, increment, movesToGo).timeMillis;
+        }
+
+        synchronized (this) {
+            if (searching) {
+                throw new IllegalArgumentException("already searching");
+            }
+            searching = true;
+            waitForStop = ponder || infinite;
+            heldResult = null;
+
+            // The pondered move is played on the opponent's time, the clock counts from the hit
+            ponderTimeMillis = limits.timeMillis;
+            if (ponder) {
+                limits.timeMillis = 0;
+            }
+        }
+        engine.think(game.position, limits, this::finished);
+    }
+
+    private synchronized void stop() {
+        waitForStop = false;
+        if (heldResult != null) {
+            sendBestMove(heldResult);
+        } else {
+            engine.stop();
+        }
+    }
+
+    private synchronized void ponderHit() {
+        waitForStop = false;
+        if (heldResult != null) {
+            sendBestMove(heldResult);
+        } else if (ponderTimeMillis > 0) {
+            // Half the budget, where the search would no longer start an iteration
+            engine.stopAfter(Math.max(1, ponderTimeMillis / 2));
+        }
+    }
+
+    // Called on the engine thread when the search ends
+    private synchronized void finished(SearchResult result) {
+        if (!searching) {
+            return;
+        }
+        if (waitForStop) {
+            heldResult = result;
+        } else {
+            sendBestMove(result);
+        }
+    }
+
+    private void sendBestMove(SearchResult result) {
+        searching = false;
+        heldResult = null;
+
+        String text = "bestmove " + Move.toString(result.bestMove);
+        if (result.pv.length > 1) {
+            text += " ponder " + Move.toString(result.pv[1]);
+        }
+        send(text);
+    }
+
+    private void sendInfo(SearchResult result) {
+        StringBuilder text = new StringBuilder("info depth ").append(result.depth);
+        if (result.isMate()) {
+            int plies = Search.MATE - Math.abs(result.score);
+            text.append(" score mate ").append(result.score > 0 ? (plies + 1) / 2 : -(plies + 1) / 2);
+        } else {
+            text.append(" score cp ").append(result.score);
+        }
+        text.append(" nodes ").append(result.nodes)
+                .append(" nps ").append(result.nodesPerSecond())
+                .append(" time ").append(result.timeMillis)
+                .append(" pv");
+        for (int move : result.pv) {
+            text.append(' ').append(Move.toString(move));
+        }
+        send(text.toString());
+    }
+
+    private void send(String line) {
+        synchronized (out) {
+            out.println(line);
+            out.flush();
+        }
+    }
+
+    private static int indexOf(String[] tokens, String token) {
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i].equals(token)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String join(String[] tokens, int start, int end) {
+        return String.join(" ", Arrays.asList(tokens).subList(Math.min(start, end), end));
+    }
+}
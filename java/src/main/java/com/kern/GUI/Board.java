@@ -31,6 +31,8 @@ import java.awt.Graphics2D;
  * The primary method, {@code draw(Graphics2D g2d)}, iterates through each row
  * and column,
  * setting the appropriate color before rendering each square.
+ * The board never changes, so {@code GamePanel} draws it only once into a
+ * cached image.
  * </p>
  */
 public class Board {
@@ -39,6 +41,10 @@ public class Board {
     public static final int SQUARE_SIZE = 80;
     public static final int HALF_SQUARE_SIZE = SQUARE_SIZE / 2;
 
+    // COLORS
+    static final Color LIGHT = new Color(238, 238, 210);
+    static final Color DARK = new Color(186, 202, 68);
+
     public static void draw(Graphics2D g2d) {
         boolean isLight = false;
 
@@ -46,10 +52,10 @@ public class Board {
             for (int column = 0; column < MAX_COLUMNS; column++) {
 
                 if (isLight) {
-                    g2d.setColor(new Color(238, 238, 210));
+                    g2d.setColor(LIGHT);
                     isLight = false;
                 } else {
-                    g2d.setColor(new Color(186, 202, 68));
+                    g2d.setColor(DARK);
                     isLight = true;
                 }
 
@@ -0,0 +1,236 @@
+package com.kern.GUI;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The FrameMetrics class measures how smoothly the {@link GamePanel} runs:
+ * <ul>
+ * <li>frame - the time between two frames while a piece is dragged, 16.7 ms
+ * when the loop keeps its 60 FPS.</li>
+ * <li>update - the game loop's work for one frame, the update and the
+ * layer drawn for it.</li>
+ * <li>paint - {@code paintComponent()} on the Swing thread.</li>
+ * <li>input age - how old the mouse coordinates are when the game loop
+ * takes them.</li>
+ * <li>input to screen - from the mouse event until the frame that shows it
+ * is painted.</li>
+ * </ul>
+ * Every measure goes into its own {@link Histogram}.
+ *
+ * <p>
+ * Metrics are switched on with {@code -Dkern.frameMetrics=true} (or
+ * {@code --frame-metrics}). The switch is a constant, so with it off the
+ * panel measures nothing and painting still does not allocate. With it on,
+ * the side panel shows the percentiles below the engine status, every
+ * painted frame is a {@code com.kern.Frame} event for JDK Flight Recorder
+ * and the percentiles are the periodic {@code com.kern.FrameStatistics}
+ * event. On exit the percentiles are written to the file named by
+ * {@code kern.frameMetrics.dump}, or to the error stream.
+ * </p>
+ */
+public final class FrameMetrics {
+    public static final boolean ENABLED = Boolean.getBoolean("kern.frameMetrics");
+
+    // The overlay is built again at most this often, not on every frame
+    private static final long OVERLAY_INTERVAL_NANOS = 500_000_000L;
+
+    final Histogram frames = new Histogram("frame");
+    final Histogram updates = new Histogram("update");
+    final Histogram paints = new Histogram("paint");
+    final Histogram inputAges = new Histogram("input age");
+    final Histogram inputToScreen = new Histogram("input to screen");
+    private final Histogram[] all = { frames, updates, paints, inputAges, inputToScreen };
+
+    // Written by the game loop
+    private long lastFrameStart;
+    private long overlayTime;
+    private long overlayCount = -1;
+    private volatile String[] overlay = new String[0];
+
+    FrameMetrics() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::dump, "Frame metrics dump"));
+        FlightRecorder.addPeriodicEvent(StatisticsEvent.class, this::emitStatistics);
+    }
+
+    /**
+     * Records one pass of the game loop, called by the game loop.
+     */
+    void recordUpdate(long start, long end) {
+        updates.record(end - start);
+        if (lastFrameStart != 0) {
+            frames.record(start - lastFrameStart);
+        }
+        lastFrameStart = start;
+    }
+
+    /**
+     * Tells that the game loop sleeps until the next event, so the wait is
+     * not a frame.
+     */
+    void idle() {
+        lastFrameStart = 0;
+    }
+
+    /**
+     * Records a painted frame and, when it shows a new mouse event, the
+     * latency of that event. Called on the Swing thread.
+     */
+    void recordPaint(long start, long end, long updateNanos, long eventTime) {
+        paints.record(end - start);
+        long latency = eventTime != 0 ? end - eventTime : 0;
+        if (eventTime != 0) {
+            inputToScreen.record(latency);
+        }
+
+        FrameEvent event = new FrameEvent();
+        if (event.shouldCommit()) {
+            event.update = updateNanos;
+            event.paint = end - start;
+            event.inputToScreen = latency;
+            event.commit();
+        }
+    }
+
+    /**
+     * Builds the overlay lines again when they are old and something was
+     * recorded since, and returns whether it did. Called by the game loop.
+     */
+    boolean refreshOverlay(long now) {
+        long recorded = updates.count() + paints.count();
+        if (now - overlayTime < OVERLAY_INTERVAL_NANOS || recorded == overlayCount) {
+            return false;
+        }
+        overlayTime = now;
+        overlayCount = recorded;
+
+        String[] lines = new String[all.length + 1];
+        lines[0] = String.format("%-6s%6s %6s %6s", "ms", "p50", "p99", "max");
+        for (int i = 0; i < all.length; i++) {
+            Histogram histogram = all[i];
+            lines[i + 1] = String.format("%-6s%6.2f %6.2f %6.1f", shortName(histogram.name),
+                    millis(histogram.percentile(50)), millis(histogram.percentile(99)), millis(histogram.max()));
+        }
+        overlay = lines;
+        return true;
+    }
+
+    String[] overlay() {
+        return overlay;
+    }
+
+    /**
+     * Writes the percentiles of every measure.
+     */
+    public void dump(PrintStream out) {
+        out.println("frame metrics, ms      count      p50      p90      p99    p99.9      max");
+        for (Histogram histogram : all) {
+            out.println(String.format("%-16s %14d %8.3f %8.3f %8.3f %8.3f %8.3f", histogram.name, histogram.count(),
+                    millis(histogram.percentile(50)), millis(histogram.percentile(90)),
+                    millis(histogram.percentile(99)), millis(histogram.percentile(99.9)),
+                    millis(histogram.max())));
+        }
+        out.flush();
+    }
+
+    private void dump() {
+        String file = System.getProperty("kern.frameMetrics.dump");
+        if (file == null) {
+            dump(System.err);
+            return;
+        }
+
+        try (PrintStream out = new PrintStream(Files.newOutputStream(Paths.get(file)))) {
+            dump(out);
+        } catch (IOException e) {
+            System.err.println("Could not write the frame metrics to " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void emitStatistics() {
+        StatisticsEvent event = new StatisticsEvent();
+        event.frames = frames.count();
+        event.frameP50 = frames.percentile(50);
+        event.frameP99 = frames.percentile(99);
+        event.updateP99 = updates.percentile(99);
+        event.paintP99 = paints.percentile(99);
+        event.inputToScreenP50 = inputToScreen.percentile(50);
+        event.inputToScreenP99 = inputToScreen.percentile(99);
+        event.commit();
+    }
+
+    private static String shortName(String name) {
+        return name.equals("input to screen") ? "input" : name.equals("input age") ? "age" : name;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    @Name("com.kern.Frame")
+    @Label("Frame")
+    @Category({ "Kern", "Rendering" })
+    @Description("One frame painted by the game panel")
+    @StackTrace(false)
+    static final class FrameEvent extends Event {
+        @Label("Update")
+        @Timespan
+        long update;
+
+        @Label("Paint")
+        @Timespan
+        long paint;
+
+        @Label("Input To Screen")
+        @Description("From the mouse event to this frame, 0 when it shows no new event")
+        @Timespan
+        long inputToScreen;
+    }
+
+    @Name("com.kern.FrameStatistics")
+    @Label("Frame Statistics")
+    @Category({ "Kern", "Rendering" })
+    @Description("Percentiles of all frames since the start")
+    @Period("1 s")
+    @StackTrace(false)
+    static final class StatisticsEvent extends Event {
+        @Label("Frames")
+        long frames;
+
+        @Label("Frame Time p50")
+        @Timespan
+        long frameP50;
+
+        @Label("Frame Time p99")
+        @Timespan
+        long frameP99;
+
+        @Label("Update p99")
+        @Timespan
+        long updateP99;
+
+        @Label("Paint p99")
+        @Timespan
+        long paintP99;
+
+        @Label("Input To Screen p50")
+        @Timespan
+        long inputToScreenP50;
+
+        @Label("Input To Screen p99")
+        @Timespan
+        long inputToScreenP99;
+    }
+}
@@ -6,13 +6,33 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.swing.JPanel;
 
+import com.kern.Engine.Engine;
+import com.kern.Engine.Network;
+import com.kern.Engine.SearchLimits;
+import com.kern.Engine.SearchResult;
+import com.kern.Engine.Tablebase;
+import com.kern.Logic.Game;
 import com.kern.Logic.Mouse;
-import com.kern.Logic.Type;
+import com.kern.Logic.Move;
+import com.kern.Logic.Position;
+import com.kern.Notation.Fen;
+import com.kern.Notation.GameLog;
+import com.kern.Notation.PgnReader;
+import com.kern.Notation.PolyglotBook;
 import com.kern.Piece.Bishop;
 import com.kern.Piece.King;
 import com.kern.Piece.Knight;
@@ -20,6 +40,7 @@ import com.kern.Piece.Pawn;
 import com.kern.Piece.Piece;
 import com.kern.Piece.Queen;
 import com.kern.Piece.Rook;
+import com.kern.Piece.Sprites;
 
 /**
  * The GamePanel class is the main component for the chess game's graphical user
@@ -36,9 +57,10 @@ import com.kern.Piece.Rook;
  * </p>
  *
  * <p>
- * The class maintains two lists of pieces: one for the main game pieces
- * (pieces) and a duplicate list (simPieces),
- * which could be used for simulation or move validation purposes.
+ * The panel is only a view of one {@link Game}, which owns the position and
+ * the rules. The pieces drawn on the board are built from the position of the
+ * game, and every move of the mouse or the engine is played on the game first
+ * and then mirrored on the pieces.
  * </p>
  *
  * <p>
@@ -46,11 +68,9 @@ import com.kern.Piece.Rook;
  * <ul>
  * <li>{@code setPieces()} - Initializes the chess pieces in their starting
  * positions.</li>
- * <li>{@code copyPieces(ArrayList<Piece> source, ArrayList<Piece> target)} -
- * Creates a copy of the game pieces list.</li>
  * <li>{@code launchGame()} - Starts the game loop in a separate thread.</li>
  * <li>{@code run()} - Contains the main loop that updates and repaints the game
- * at regular intervals.</li>
+ * when something happens.</li>
  * <li>{@code update()} - Updates game state (currently a placeholder for future
  * game logic).</li>
  * <li>{@code paintComponent(Graphics g)} - Renders the board and pieces onto
@@ -59,8 +79,29 @@ import com.kern.Piece.Rook;
  * </p>
  *
  * <p>
- * The game loop is designed to update and redraw the screen in a timely manner
- * based on the FPS setting.
+ * The board is drawn once into an image, and the pieces that are not dragged
+ * are drawn over it into a second image, the layer, which is only drawn again
+ * when a piece is picked, dropped or moved. A frame then copies the layer and
+ * draws the dragged piece on top, and while dragging only the squares under
+ * the piece and the highlighted square are repainted. Painting a frame does
+ * not allocate.
+ * </p>
+ *
+ * <p>
+ * The game loop is driven by events: a mouse event or a move of the engine
+ * wakes it up for one update and repaint. Only while a piece is dragged does it
+ * run at the FPS setting, otherwise the thread is parked and the game costs no
+ * CPU at all.
+ * </p>
+ *
+ * <p>
+ * With a {@link GameLog} every move is appended to the log as soon as it is
+ * played, and the game is ended there with its result.
+ * </p>
+ *
+ * <p>
+ * With {@link FrameMetrics#ENABLED} the loop and the painting are timed, and
+ * the percentiles are shown in the side panel.
  * </p>
  *
  * @see javax.swing.JPanel
@@ -72,27 +113,96 @@ public class GamePanel extends JPanel implements Runnable {
     public static final int WINDOW_HEIGHT = 640;
 
     final int FPS = 60;
-    Thread gameThread;
-    Mouse mouse = new Mouse();
+    volatile Thread gameThread;
+    Mouse mouse = new Mouse(this::wakeUp);
+
+    // GAME, the pieces below only show its position
+    final Game game = new Game();
+    int status = Game.PLAYING;
+    boolean check;
 
     // PIECES
-    public static ArrayList<Piece> pieces = new ArrayList<>();
-    public static ArrayList<Piece> simPieces = new ArrayList<>();
-    public static ArrayList<Piece> promotionPieces = new ArrayList<>();
-    public static Piece castlingPiece;
+    ArrayList<Piece> pieces = new ArrayList<>();
+    ArrayList<Piece> promotionPieces = new ArrayList<>();
+    Piece castlingPiece;
     Piece activePiece;
 
     // COLORS
     public static final int WHITE = 0;
     public static final int BLACK = 1;
-    int currentColor = WHITE;
+    public static final int TWO_PLAYERS = -1;
+
+    // ENGINE, plays engineColor while the mouse plays the other side
+    static final long ENGINE_TIME_MILLIS = 1000;
+    Engine engine;
+    int engineColor;
+    int engineSearchPly = -1;
+    volatile int engineMove = Move.NONE;
 
     // BOOLEANS
     boolean canMove;
     boolean validSequare;
+    boolean simulated;
     Boolean canPromotion = false;
 
+    // RENDERING
+    static final Color ORIGIN_COLOR = new Color(168, 200, 136);
+    static final Color TARGET_COLOR = new Color(118, 150, 86);
+    static final Font FONT = new Font("Book Antiqua", Font.PLAIN, 20);
+    static final Font METRICS_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    // Between the promotion pieces and White's turn
+    static final int METRICS_Y = 492;
+    static final int METRICS_LINE = 12;
+    static final int BOARD_SIZE = Board.SQUARE_SIZE * 8;
+
+    // The board alone, and the board with the pieces at rest. The layer is drawn
+    // on the game thread into the spare image, then the two are swapped
+    BufferedImage boardImage;
+    BufferedImage originTile;
+    BufferedImage targetTile;
+    BufferedImage[] layers = new BufferedImage[2];
+    volatile BufferedImage layer;
+    boolean layerDirty = true;
+    boolean repaintAll = true;
+
+    // What was painted last frame, to repaint only what changed
+    int lastX, lastY;
+    int lastHighlight = -1;
+
+    // LOG of the played games, the game is begun there with its first move
+    GameLog gameLog;
+    boolean logging;
+
+    // The engine status line, built again only for a new result
+    SearchResult shownResult;
+    String engineStatus;
+
+    // METRICS, null unless FrameMetrics.ENABLED. The game loop hands the time of
+    // the mouse event it took and its own duration to the next paint
+    final FrameMetrics metrics = FrameMetrics.ENABLED ? new FrameMetrics() : null;
+    long takenEventTime;
+    long paintedEventTime;
+    volatile long frameEventTime;
+    volatile long frameUpdateNanos;
+
+    // The legal move to the square under the active piece, also the confirmed
+    // move waiting for the promotion choice
+    int pendingMove = Move.NONE;
+
     public GamePanel() {
+        this(TWO_PLAYERS);
+    }
+
+    public GamePanel(int engineColor) {
+        this(engineColor, 1);
+    }
+
+    public GamePanel(int engineColor, int engineThreads) {
+        this.engineColor = engineColor;
+        if (engineColor != TWO_PLAYERS) {
+            engine = new Engine(Engine.DEFAULT_HASH_MB, engineThreads);
+        }
+
         setPreferredSize(new Dimension(WINDOW_WIDTH, WINDOW_HEIGHT));
         setBackground(new Color(118, 150, 86));
 
@@ -100,53 +210,98 @@ public class GamePanel extends JPanel implements Runnable {
         addMouseListener(mouse);
 
         setPieces();
-        copyPieces(pieces, simPieces);
+        createImages();
+        drawLayer();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+
+        // Now the screen is known, use images in its format
+        Sprites.convert(getGraphicsConfiguration());
+        createImages();
+        drawLayer();
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * Lets the engine play its opening moves from the book.
+     */
+    public void setBook(PolyglotBook book) {
+        if (engine != null) {
+            engine.setBook(book);
+        }
+    }
+
+    /**
+     * Lets the engine look up endgames in the tables.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        if (engine != null) {
+            engine.setTablebase(tablebase);
+        }
+    }
+
+    /**
+     * Lets the engine evaluate with a trained network.
+     */
+    public void setNetwork(Network network) {
+        if (engine != null) {
+            engine.setNetwork(network);
+        }
+    }
+
+    /**
+     * Appends the moves of the game to the log as they are played.
+     */
+    public void setGameLog(GameLog gameLog) {
+        this.gameLog = gameLog;
+    }
+
+    /**
+     * Replaces the game with the position of a FEN record, before the game
+     * loop is started.
+     */
+    public void setPosition(String fen) {
+        game.load(fen);
+        status = game.getStatus();
+        check = game.isCheck();
+
+        setPieces();
+        drawLayer();
     }
 
     public void setPieces() {
-        // White Pieces
-        pieces.add(new Pawn(WHITE, 0, 6));
-        pieces.add(new Pawn(WHITE, 1, 6));
-        pieces.add(new Pawn(WHITE, 2, 6));
-        pieces.add(new Pawn(WHITE, 3, 6));
-        pieces.add(new Pawn(WHITE, 4, 6));
-        pieces.add(new Pawn(WHITE, 5, 6));
-        pieces.add(new Pawn(WHITE, 6, 6));
-        pieces.add(new Pawn(WHITE, 7, 6));
-        pieces.add(new Rook(WHITE, 0, 7));
-        pieces.add(new Rook(WHITE, 7, 7));
-        pieces.add(new Knight(WHITE, 1, 7));
-        pieces.add(new Knight(WHITE, 6, 7));
-        pieces.add(new Bishop(WHITE, 2, 7));
-        pieces.add(new Bishop(WHITE, 5, 7));
-        pieces.add(new Queen(WHITE, 3, 7));
-        pieces.add(new King(WHITE, 4, 7));
-
-        // Black Pieces
-        pieces.add(new Pawn(BLACK, 0, 1));
-        pieces.add(new Pawn(BLACK, 1, 1));
-        pieces.add(new Pawn(BLACK, 2, 1));
-        pieces.add(new Pawn(BLACK, 3, 1));
-        pieces.add(new Pawn(BLACK, 4, 1));
-        pieces.add(new Pawn(BLACK, 5, 1));
-        pieces.add(new Pawn(BLACK, 6, 1));
-        pieces.add(new Pawn(BLACK, 7, 1));
-        pieces.add(new Rook(BLACK, 0, 0));
-        pieces.add(new Rook(BLACK, 7, 0));
-        pieces.add(new Knight(BLACK, 1, 0));
-        pieces.add(new Knight(BLACK, 6, 0));
-        pieces.add(new Bishop(BLACK, 2, 0));
-        pieces.add(new Bishop(BLACK, 5, 0));
-        pieces.add(new Queen(BLACK, 3, 0));
-        pieces.add(new King(BLACK, 4, 0));
-
-    }
-
-    private void copyPieces(ArrayList<Piece> source, ArrayList<Piece> target) {
-        target.clear();
-
-        for (int i = 0; i < source.size(); i++) {
-            target.add(source.get(i));
+        pieces.clear();
+
+        // One piece for every occupied square of the game
+        for (int square = 0; square < 64; square++) {
+            int code = game.position.pieceAt(square);
+            if (code != Position.EMPTY) {
+                pieces.add(newPiece(Position.color(code), Position.type(code),
+                        Position.column(square), Position.row(square)));
+            }
+        }
+    }
+
+    private static Piece newPiece(int color, int type, int column, int row) {
+        switch (type) {
+            case Position.PAWN:
+                return new Pawn(color, column, row);
+            case Position.KNIGHT:
+                return new Knight(color, column, row);
+            case Position.BISHOP:
+                return new Bishop(color, column, row);
+            case Position.ROOK:
+                return new Rook(color, column, row);
+            case Position.QUEEN:
+                return new Queen(color, column, row);
+            default:
+                return new King(color, column, row);
         }
     }
 
@@ -155,33 +310,182 @@ public class GamePanel extends JPanel implements Runnable {
         gameThread.start();
     }
 
+    /**
+     * Makes the game loop run one more update, called from any thread.
+     */
+    public void wakeUp() {
+        Thread thread = gameThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
     @Override
     public void run() {
         // Game loop
-        double drawInterval = 1000000000 / FPS;
-        double delta = 0;
-        long lastTime = System.nanoTime();
-        long currentTime;
+        long drawInterval = 1000000000 / FPS;
+        long nextFrame = System.nanoTime();
 
         while (gameThread != null) {
-            currentTime = System.nanoTime();
+            long frameStart = FrameMetrics.ENABLED ? System.nanoTime() : 0;
+            update();
+            repaintChanges();
+            if (FrameMetrics.ENABLED) {
+                long frameEnd = System.nanoTime();
+                metrics.recordUpdate(frameStart, frameEnd);
+                frameUpdateNanos = frameEnd - frameStart;
+                if (metrics.refreshOverlay(frameEnd)) {
+                    repaint(BOARD_SIZE, METRICS_Y - METRICS_LINE, WINDOW_WIDTH - BOARD_SIZE, METRICS_LINE * 7);
+                }
+            }
+
+            if (isAnimating()) {
+                // Keep the frame rate until the piece is dropped or the engine has moved
+                nextFrame += drawInterval;
+                long now = System.nanoTime();
+                if (nextFrame < now) {
+                    nextFrame = now;
+                }
+                while (now < nextFrame) {
+                    LockSupport.parkNanos(nextFrame - now);
+                    now = System.nanoTime();
+                }
+            } else {
+                if (FrameMetrics.ENABLED) {
+                    metrics.idle();
+                }
+
+                // Sleep until the next event, a wake up before this point is not lost
+                LockSupport.park();
+                nextFrame = System.nanoTime();
+            }
+        }
+    }
+
+    private void createImages() {
+        GraphicsConfiguration config = getGraphicsConfiguration();
+
+        boardImage = createImage(config);
+        layers[0] = createImage(config);
+        layers[1] = createImage(config);
+        layer = layers[0];
+
+        Graphics2D g2d = boardImage.createGraphics();
+        Board.draw(g2d);
+        g2d.dispose();
+
+        // The square highlights are half transparent, copying a translucent image is
+        // cheaper than filling with an AlphaComposite
+        originTile = createTile(config, ORIGIN_COLOR);
+        targetTile = createTile(config, TARGET_COLOR);
+    }
+
+    private static BufferedImage createImage(GraphicsConfiguration config) {
+        if (config == null) {
+            return new BufferedImage(BOARD_SIZE, BOARD_SIZE, BufferedImage.TYPE_INT_RGB);
+        }
+        return config.createCompatibleImage(BOARD_SIZE, BOARD_SIZE);
+    }
+
+    private static BufferedImage createTile(GraphicsConfiguration config, Color color) {
+        BufferedImage tile;
+        if (config == null) {
+            tile = new BufferedImage(Board.SQUARE_SIZE, Board.SQUARE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+        } else {
+            tile = config.createCompatibleImage(Board.SQUARE_SIZE, Board.SQUARE_SIZE, Transparency.TRANSLUCENT);
+        }
+
+        Graphics2D g2d = tile.createGraphics();
+        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC, 0.5f));
+        g2d.setColor(color);
+        g2d.fillRect(0, 0, Board.SQUARE_SIZE, Board.SQUARE_SIZE);
+        g2d.dispose();
+        return tile;
+    }
+
+    /**
+     * Draws the board and every piece but the active one into the spare layer
+     * and shows it.
+     */
+    private void drawLayer() {
+        BufferedImage next = layer == layers[0] ? layers[1] : layers[0];
+
+        Graphics2D g2d = next.createGraphics();
+        g2d.drawImage(boardImage, 0, 0, null);
+        for (Piece piece : pieces) {
+            if (piece != activePiece) {
+                piece.draw(g2d);
+            }
+        }
+        g2d.dispose();
+
+        layer = next;
+        layerDirty = false;
+    }
+
+    // The pieces at rest changed, draw the layer again before the next frame
+    private void refreshLayer() {
+        layerDirty = true;
+        repaintAll = true;
+    }
+
+    private void repaintChanges() {
+        if (layerDirty) {
+            drawLayer();
+        }
 
-            delta += (currentTime - lastTime) / drawInterval;
-            lastTime = currentTime;
+        int highlight = activePiece != null && canMove ? Position.square(activePiece.column, activePiece.row) : -1;
 
-            if (delta >= 1) {
-                update();
-                repaint();
-                delta--;
+        if (repaintAll) {
+            repaintAll = false;
+            repaint();
+        } else {
+            // The dragged piece where it was and where it is now
+            if (activePiece != null && (activePiece.x != lastX || activePiece.y != lastY)) {
+                repaint(lastX, lastY, Board.SQUARE_SIZE, Board.SQUARE_SIZE);
+                repaint(activePiece.x, activePiece.y, Board.SQUARE_SIZE, Board.SQUARE_SIZE);
+            }
+            if (highlight != lastHighlight) {
+                repaintSquare(lastHighlight);
+                repaintSquare(highlight);
+            }
+            if (engine != null && engine.isThinking()) {
+                repaint(BOARD_SIZE, 0, WINDOW_WIDTH - BOARD_SIZE, WINDOW_HEIGHT);
             }
         }
+
+        if (activePiece != null) {
+            lastX = activePiece.x;
+            lastY = activePiece.y;
+        }
+        lastHighlight = highlight;
+    }
+
+    private void repaintSquare(int square) {
+        if (square >= 0) {
+            repaint(Position.column(square) * Board.SQUARE_SIZE, Position.row(square) * Board.SQUARE_SIZE,
+                    Board.SQUARE_SIZE, Board.SQUARE_SIZE);
+        }
+    }
+
+    // A dragged piece follows the mouse and the engine shows its progress
+    private boolean isAnimating() {
+        return activePiece != null && !canPromotion || engine != null && engine.isThinking();
     }
 
     private void update() {
 
-        if (canPromotion) {
+        if (status != Game.PLAYING) {
+            // The game is over, nothing can move anymore
+            return;
+        } else if (game.getSideToMove() == engineColor) {
+            updateEngine();
+        } else if (canPromotion) {
             promoting();
         } else {
+            if (FrameMetrics.ENABLED) {
+                takeMouseEvent();
+            }
 
             // If the mouse is pressed
             if (mouse.pressed) {
@@ -189,12 +493,15 @@ public class GamePanel extends JPanel implements Runnable {
                 if (activePiece == null) {
                     // Iterate throught the pieces that meet the conditions Color (Ally) & Position
                     // (X & Y)
-                    for (Piece piece : simPieces) {
-                        if (piece.color == currentColor
+                    for (Piece piece : pieces) {
+                        if (piece.color == game.getSideToMove()
                                 && piece.column == mouse.x / Board.SQUARE_SIZE
                                 && piece.row == mouse.y / Board.SQUARE_SIZE) {
                             // Set the active piece to current held piece
                             activePiece = piece;
+                            simulated = false;
+                            validSequare = false;
+                            refreshLayer();
                         }
                     }
                 } else {
@@ -209,20 +516,12 @@ public class GamePanel extends JPanel implements Runnable {
                 if (activePiece != null) {
                     if (validSequare) {
                         // Move is confirmed
-
-                        // Update the piece list in case a piece has been captured and removed during
-                        // the simulation
-                        copyPieces(simPieces, pieces);
-                        activePiece.updatePosition();
-
-                        if (castlingPiece != null) {
-                            castlingPiece.updatePosition();
-                        }
-
-                        if (canPromote()) {
+                        if (Move.isPromotion(pendingMove)) {
+                            setPromotionPieces();
                             canPromotion = true;
+                            repaintAll = true;
                         } else {
-                            changePlayer();
+                            playMove(pendingMove);
                         }
                     } else {
                         // Move is cancled
@@ -230,165 +529,225 @@ public class GamePanel extends JPanel implements Runnable {
                         // Reset everything
                         activePiece.resetPosition();
                         activePiece = null;
+                        refreshLayer();
                     }
                 }
             }
         }
     }
 
+    private void updateEngine() {
+        // Start the search once per position, it runs on the engine thread
+        if (!engine.isThinking() && engineMove == Move.NONE && engineSearchPly != game.position.ply) {
+            engineSearchPly = game.position.ply;
+            engine.think(game.position, SearchLimits.time(ENGINE_TIME_MILLIS), result -> {
+                engineMove = result.bestMove;
+                wakeUp();
+            });
+        }
+
+        if (engineMove != Move.NONE) {
+            int move = engineMove;
+            engineMove = Move.NONE;
+            playMove(move);
+        }
+    }
+
+    /**
+     * Plays a legal move on the game and mirrors it on the pieces.
+     */
+    private void playMove(int move) {
+        int color = game.getSideToMove();
+        int from = Move.from(move);
+        int to = Move.to(move);
+        Piece piece = getPiece(from);
+
+        if (Move.isCapture(move)) {
+            pieces.remove(getPiece(Move.isEnPassant(move) ? (color == WHITE ? to - 8 : to + 8) : to));
+        }
+
+        piece.column = Position.column(to);
+        piece.row = Position.row(to);
+        piece.updatePosition();
+
+        if (Move.isCastling(move)) {
+            Piece rook = getPiece(to > from ? from + 3 : from - 4);
+            rook.column = Position.column(to > from ? from + 1 : from - 1);
+            rook.updatePosition();
+        }
+
+        if (Move.isPromotion(move)) {
+            pieces.set(pieces.indexOf(piece), newPiece(color, Move.promotion(move), piece.column, piece.row));
+        }
+
+        String startFen = game.getMoveCount() == 0 ? game.toFen() : null;
+        game.play(move);
+        status = game.getStatus();
+        check = game.isCheck();
+        logMove(move, startFen);
+
+        activePiece = null;
+        castlingPiece = null;
+        canMove = false;
+        validSequare = false;
+        refreshLayer();
+    }
+
+    // Called after the move was played, with the position before it when it was the first
+    private void logMove(int move, String startFen) {
+        if (gameLog == null) {
+            return;
+        }
+
+        try {
+            if (!logging) {
+                Map<String, String> tags = new LinkedHashMap<>();
+                tags.put("Event", "Casual game");
+                tags.put("Date", LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy.MM.dd")));
+                tags.put("White", engineColor == WHITE ? "Engine" : "Player");
+                tags.put("Black", engineColor == BLACK ? "Engine" : "Player");
+                if (startFen != null && !startFen.equals(Fen.START)) {
+                    tags.put("SetUp", "1");
+                    tags.put("FEN", startFen);
+                }
+                gameLog.beginGame(tags);
+                logging = true;
+            }
+
+            gameLog.append(move);
+            if (status == Game.CHECKMATE) {
+                gameLog.endGame(game.getSideToMove() == WHITE ? PgnReader.BLACK_WINS : PgnReader.WHITE_WINS);
+            } else if (status == Game.STALEMATE) {
+                gameLog.endGame(PgnReader.DRAW);
+            }
+        } catch (IOException e) {
+            // The game goes on without its log
+            System.err.println("Cannot write to " + gameLog.getFile() + ": " + e.getMessage());
+            gameLog = null;
+        }
+    }
+
+    private Piece getPiece(int square) {
+        for (Piece piece : pieces) {
+            if (piece.getSquare() == square) {
+                return piece;
+            }
+        }
+        return null;
+    }
+
     private void promoting() {
         if (mouse.pressed) {
             for (Piece piece : promotionPieces) {
                 if (piece.column == mouse.x / Board.SQUARE_SIZE
                         && piece.row == mouse.y / Board.SQUARE_SIZE) {
-                    switch (piece.type) {
-                        case QUEEN:
-                            simPieces.add(new Queen(currentColor, activePiece.column, activePiece.row));
-                            break;
-                        case ROOK:
-                            simPieces.add(new Rook(currentColor, activePiece.column, activePiece.row));
-                            break;
-                        case KNIGHT:
-                            simPieces.add(new Knight(currentColor, activePiece.column, activePiece.row));
-                            break;
-                        case BISHOP:
-                            simPieces.add(new Bishop(currentColor, activePiece.column, activePiece.row));
-                            break;
-                        default:
-                            break;
-                    }
-                    simPieces.remove(activePiece.getIndex());
-                    copyPieces(simPieces, pieces);
-                    activePiece = null;
                     canPromotion = false;
-                    changePlayer();
+                    playMove(game.findMove(Move.from(pendingMove), Move.to(pendingMove), piece.type.ordinal()));
+                    break;
                 }
             }
         }
     }
 
+    // The coordinates about to be used are as old as the last mouse event
+    private void takeMouseEvent() {
+        long eventTime = mouse.eventTime;
+        if (eventTime != 0 && eventTime != takenEventTime) {
+            takenEventTime = eventTime;
+            metrics.inputAges.record(System.nanoTime() - eventTime);
+            frameEventTime = eventTime;
+        }
+    }
+
     private void simulate() {
 
+        // Update the active piece position to move along with the mouse
+        activePiece.x = mouse.x - Board.HALF_SQUARE_SIZE;
+        activePiece.y = mouse.y - Board.HALF_SQUARE_SIZE;
+
+        int column = activePiece.getColumn(activePiece.x);
+        int row = activePiece.getRow(activePiece.y);
+
+        // The move only needs to be checked again when the piece enters another square
+        if (simulated && column == activePiece.column && row == activePiece.row) {
+            return;
+        }
+        simulated = true;
+
         canMove = false;
         validSequare = false;
-
-        // Reset the piece list in every move
-        // this is for restoring the removed piece during simulation
-        copyPieces(pieces, simPieces);
+        pendingMove = Move.NONE;
 
         // Reset castling piece
         if (castlingPiece != null) {
             castlingPiece.column = castlingPiece.preColumn;
             castlingPiece.x = castlingPiece.getX(castlingPiece.column);
             castlingPiece = null;
+            refreshLayer();
         }
 
-        // Update the active piece position to move along with the mouse
-        activePiece.x = mouse.x - Board.HALF_SQUARE_SIZE;
-        activePiece.y = mouse.y - Board.HALF_SQUARE_SIZE;
+        activePiece.column = column;
+        activePiece.row = row;
 
-        activePiece.column = activePiece.getColumn(activePiece.x);
-        activePiece.row = activePiece.getRow(activePiece.y);
-
-        // check if the piece can move to the target square
-        if (activePiece.canMove(activePiece.column, activePiece.row)) {
+        // The game generates the legal moves of the dragged piece only, which
+        // also covers pins, checks and castling through attacked squares
+        pendingMove = game.findMove(activePiece.getSquare(), Position.square(column, row), Position.QUEEN);
+        if (pendingMove != Move.NONE) {
             canMove = true;
-
-            // If hitting an oponent piece, remove it from the list
-            if (activePiece.hittinPiece != null) {
-                simPieces.remove(activePiece.hittinPiece.getIndex());
-            }
-
             checkCastling();
-
             validSequare = true;
         }
     }
 
     public void checkCastling() {
-        if (castlingPiece != null) {
-            if (castlingPiece.column == 0) {
-                castlingPiece.column += 3;
-            } else if (castlingPiece.column == 7) {
-                castlingPiece.column -= 2;
-            }
-            castlingPiece.x = castlingPiece.getX(castlingPiece.column);
-        }
-    }
-
-    public void changePlayer() {
-        if (currentColor == WHITE) {
-            currentColor = BLACK;
-
-            // Reset Two Stepped flag
-            for (Piece piece : pieces) {
-                if (piece.color == BLACK) {
-                    piece.isTwoStepped = false;
-                }
-            }
-        } else {
-            currentColor = WHITE;
+        if (Move.isCastling(pendingMove)) {
+            int from = Move.from(pendingMove);
+            boolean kingSide = Move.to(pendingMove) > from;
 
-            // Reset Two Stepped flag
-            for (Piece piece : pieces) {
-                if (piece.color == WHITE) {
-                    piece.isTwoStepped = false;
-                }
-            }
+            // Show the rook next to the king until the move is confirmed
+            castlingPiece = getPiece(kingSide ? from + 3 : from - 4);
+            castlingPiece.column = Position.column(kingSide ? from + 1 : from - 1);
+            castlingPiece.x = castlingPiece.getX(castlingPiece.column);
+            refreshLayer();
         }
-
-        activePiece = null;
     }
 
-    public boolean canPromote() {
-        if (activePiece.type == Type.PAWN) {
-            if (activePiece.color == WHITE && activePiece.row == 0
-                    || activePiece.color == BLACK && activePiece.row == 7) {
-                promotionPieces.clear();
-                promotionPieces.add(new Queen(currentColor, 8, 2));
-                promotionPieces.add(new Rook(currentColor, 8, 3));
-                promotionPieces.add(new Knight(currentColor, 8, 4));
-                promotionPieces.add(new Bishop(currentColor, 8, 5));
-                return true;
-            }
-        }
+    public void setPromotionPieces() {
+        int color = game.getSideToMove();
 
-        return false;
+        promotionPieces.clear();
+        promotionPieces.add(new Queen(color, 8, 2));
+        promotionPieces.add(new Rook(color, 8, 3));
+        promotionPieces.add(new Knight(color, 8, 4));
+        promotionPieces.add(new Bishop(color, 8, 5));
     }
 
     @Override
     public void paintComponent(Graphics g) {
-        super.paintComponent(g);
+        long paintStart = FrameMetrics.ENABLED ? System.nanoTime() : 0;
 
-        // Draw the board
+        // The layer covers the board, only the side panel needs the background.
+        // super.paintComponent() would copy the Graphics on every frame
         Graphics2D g2d = (Graphics2D) g;
-        Board.draw(g2d);
+        g2d.setColor(getBackground());
+        g2d.fillRect(BOARD_SIZE, 0, getWidth() - BOARD_SIZE, getHeight());
 
-        // Draw the pieces
-        for (Piece p : pieces) {
-            p.draw(g2d);
-        }
+        // Draw the board and the pieces at rest
+        g2d.drawImage(layer, 0, 0, null);
 
+        Piece activePiece = this.activePiece;
         if (activePiece != null) {
             // The original square highlight
-            g2d.setColor(new Color(168, 200, 136));
-            g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f));
-            g2d.fillRect(
+            g2d.drawImage(originTile,
                     activePiece.preColumn * Board.SQUARE_SIZE,
                     activePiece.preRow * Board.SQUARE_SIZE,
-                    Board.SQUARE_SIZE,
-                    Board.SQUARE_SIZE);
-            g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1f));
+                    null);
 
             if (canMove) {
-                g2d.setColor(new Color(118, 150, 86));
-                g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f));
-                g2d.fillRect(
+                g2d.drawImage(targetTile,
                         activePiece.column * Board.SQUARE_SIZE,
                         activePiece.row * Board.SQUARE_SIZE,
-                        Board.SQUARE_SIZE,
-                        Board.SQUARE_SIZE);
-                g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1f));
+                        null);
             }
 
             // Draw the active piece in the end so it won't be hidden by the board or the
@@ -398,21 +757,59 @@ public class GamePanel extends JPanel implements Runnable {
 
         // Status message
         g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-        g2d.setFont(new Font("Book Antiqua", Font.PLAIN, 20));
+        g2d.setFont(FONT);
         g2d.setColor(Color.white);
 
         if (canPromotion) {
-            g2d.drawString("Promote to:", Board.SQUARE_SIZE * 8 + 20, 150);
+            g2d.drawString("Promote to:", BOARD_SIZE + 20, 150);
             for (Piece piece : promotionPieces) {
-                g2d.drawImage(piece.image, piece.getX(piece.column), piece.getY(piece.row),
-                        Board.SQUARE_SIZE, Board.SQUARE_SIZE, null);
+                piece.draw(g2d);
             }
         }
 
-        if (currentColor == WHITE) {
-            g2d.drawString("White's turn", Board.SQUARE_SIZE * 8 + 20, WINDOW_HEIGHT * 9 / 10);
+        if (engine != null && engine.getLastResult() != null) {
+            SearchResult result = engine.getLastResult();
+            if (result != shownResult) {
+                shownResult = result;
+                engineStatus = result.isBookMove() ? "Book move"
+                        : "Depth " + result.depth + ", " + result.nodesPerSecond() / 1000 + " kN/s";
+            }
+            g2d.drawString(engineStatus, BOARD_SIZE + 20, WINDOW_HEIGHT / 2);
+        }
+
+        if (status == Game.CHECKMATE) {
+            g2d.drawString(game.getSideToMove() == WHITE ? "Checkmate, Black wins" : "Checkmate, White wins",
+                    BOARD_SIZE + 20, WINDOW_HEIGHT / 2 - 40);
+        } else if (status == Game.STALEMATE) {
+            g2d.drawString("Stalemate", BOARD_SIZE + 20, WINDOW_HEIGHT / 2 - 40);
+        } else if (game.getSideToMove() == WHITE) {
+            g2d.drawString(check ? "White's turn, check" : "White's turn",
+                    BOARD_SIZE + 20, WINDOW_HEIGHT * 9 / 10);
+        } else {
+            g2d.drawString(check ? "Black's turn, check" : "Black's turn",
+                    BOARD_SIZE + 20, WINDOW_HEIGHT / 10);
+        }
+
+        if (FrameMetrics.ENABLED) {
+            paintMetrics(g2d, paintStart);
+        }
+    }
+
+    // The overlay lines are built by the game loop, painting them only draws
+    private void paintMetrics(Graphics2D g2d, long paintStart) {
+        g2d.setFont(METRICS_FONT);
+        String[] lines = metrics.overlay();
+        for (int i = 0; i < lines.length; i++) {
+            g2d.drawString(lines[i], BOARD_SIZE + 6, METRICS_Y + i * METRICS_LINE);
+        }
+
+        // Each mouse event is counted by the first frame that shows it
+        long eventTime = frameEventTime;
+        if (eventTime == paintedEventTime) {
+            eventTime = 0;
         } else {
-            g2d.drawString("Black's turn", Board.SQUARE_SIZE * 8 + 20, WINDOW_HEIGHT / 10);
+            paintedEventTime = eventTime;
         }
+        metrics.recordPaint(paintStart, System.nanoTime(), frameUpdateNanos, eventTime);
     }
 }
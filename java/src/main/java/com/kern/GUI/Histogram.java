@@ -0,0 +1,83 @@
+package com.kern.GUI;
+
+/**
+ * The Histogram class counts durations in nanoseconds into log-linear
+ * buckets, the layout of an HDR histogram: each power of two is split into
+ * {@link #SUB_BUCKETS} equal buckets, so every value is kept to within 1.6%
+ * however large it is, in a fixed array and without allocating.
+ *
+ * <p>
+ * Only one thread records into a histogram. Other threads may read the
+ * percentiles at any time; they see the counts of a recent moment, which is
+ * enough for a display.
+ * </p>
+ */
+final class Histogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    final String name;
+    private final long[] counts = new long[(64 - SUB_BITS) * SUB_BUCKETS];
+    private volatile long count;
+    private long max;
+
+    Histogram(String name) {
+        this.name = name;
+    }
+
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[index(value)]++;
+        if (value > max) {
+            max = value;
+        }
+        count++;
+    }
+
+    long count() {
+        return count;
+    }
+
+    long max() {
+        return max;
+    }
+
+    /**
+     * Returns the value that {@code percentile} percent of the recorded
+     * values do not exceed, rounded up to the end of its bucket.
+     */
+    long percentile(double percentile) {
+        long total = count;
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(lowestValue(i + 1) - 1, max);
+            }
+        }
+        return max;
+    }
+
+    // Values below 2 * SUB_BUCKETS have a bucket each, above the bucket width doubles
+    // with every power of two
+    private static int index(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long lowestValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (index - shift * SUB_BUCKETS) << shift;
+    }
+}
@@ -0,0 +1,201 @@
+package com.kern.Logic;
+
+/**
+ * The Attacks class holds the precomputed attack tables of every piece type.
+ *
+ * <p>
+ * Knight, king and pawn attacks only depend on the square of the piece and are
+ * stored in one table entry per square. Rook and bishop attacks also depend on
+ * the pieces blocking their rays; they are looked up in magic bitboard tables:
+ * the relevant blockers are masked out of the occupancy, multiplied by a magic
+ * number and shifted down to an index into the table of that square.
+ * </p>
+ *
+ * <p>
+ * All tables are filled once when the class is loaded, after that any
+ * "which squares does this piece attack" query is a couple of array lookups.
+ * Squares use the numbering of {@link Position}, a1 = 0 to h8 = 63.
+ * </p>
+ */
+public final class Attacks {
+    public static final long[] KNIGHT = new long[64];
+    public static final long[] KING = new long[64];
+    public static final long[][] PAWN = new long[2][64];
+
+    private static final long[] ROOK_MAGICS = {
+            0x0080004000802010L, 0x2C40021000442000L, 0x2080088020001000L, 0x1280241800801000L,
+            0x0100080004030010L, 0x0900061900040048L, 0x0400220081080410L, 0x020001040040208AL,
+            0x2012800020400080L, 0x0001402010014002L, 0x4200802000100089L, 0x0484801004480080L,
+            0x6102002010080600L, 0xA401000400080300L, 0x0240800200010080L, 0x04018020C0800100L,
+            0x0930298000804000L, 0x2000808020004001L, 0x02A0004040100800L, 0x0448008008841000L,
+            0x2100850011080100L, 0xA0A5808002000400L, 0x0400040050014208L, 0x0490020005084484L,
+            0x0000800080204004L, 0x80004000C0201000L, 0x8004200100401500L, 0x4020080080801000L,
+            0x0001001100080004L, 0x0500020080040080L, 0x2800A12400104208L, 0x0002240200008041L,
+            0x0480002008400440L, 0x3000802004804001L, 0x1061002001001448L, 0xC040805002800800L,
+            0x2E80080080800400L, 0x2108801401800200L, 0x101A0008A2000401L, 0x0020208402000041L,
+            0x0000308040008000L, 0x2420210082020040L, 0x8000100020008080L, 0x2047001A50030020L,
+            0x0000080004008080L, 0x0032000204008080L, 0x2020100811540002L, 0x0081000060810002L,
+            0x1180002000400040L, 0x9001400280200480L, 0x8900200080100080L, 0x0080100080080080L,
+            0x0004000680080080L, 0x8302008002040080L, 0x0600010210880400L, 0x8201009409084200L,
+            0x428004A240150081L, 0x0200810211E04001L, 0x141200102280400AL, 0x0740040821001001L,
+            0x110300540A080091L, 0x8001000400080201L, 0x0020080110008204L, 0x2102002404510482L
+    };
+
+    private static final long[] BISHOP_MAGICS = {
+            0x14400800A1020020L, 0x0A200458A208C650L, 0x0010541082289880L, 0x0804040091001008L,
+            0x40C1114010204014L, 0x8012088404500004L, 0x4004013910110A01L, 0x0411420450021020L,
+            0x0444C01044808880L, 0x0000080104208211L, 0x3080100C4C802008L, 0x2000082040402003L,
+            0x2012040420022040L, 0x0880020110088802L, 0x0400004410041100L, 0x18240A008E0110C1L,
+            0x000800208204A810L, 0x000819068E840408L, 0x0028201000404009L, 0x8448010982810060L,
+            0x0004002201210000L, 0x0082008022012040L, 0x1405000044422020L, 0x0012000022110400L,
+            0x0A04104041022804L, 0x0001112804940800L, 0x0180404104110202L, 0x4051080014040490L,
+            0x0020840008802002L, 0x8010090201208800L, 0x0702008040480800L, 0x0000608119440420L,
+            0x0C10884400200403L, 0x0114100402082104L, 0x0801080200810400L, 0x0820040400180210L,
+            0x1040088020060020L, 0x0018210042180800L, 0x8410042101006100L, 0x18480890280A8200L,
+            0x0400822010032120L, 0xA105044A12002000L, 0x00040A0082209000L, 0x0410460214045A00L,
+            0x0080081A08204400L, 0x0040120481000208L, 0x0184110244010208L, 0x0001410905020E00L,
+            0x0422009048080030L, 0x2000411848020003L, 0x0C0622008C049202L, 0x8400002042020020L,
+            0x014040D0A20200A8L, 0x09000420042100C0L, 0x0004204401020022L, 0x0120044102182005L,
+            0x0406208050082102L, 0x01210A0134120200L, 0x0438000021080800L, 0x0000800420420200L,
+            0x0000800804504400L, 0x010002200242020CL, 0x00001003500C0290L, 0x40C0020401020998L
+    };
+
+    private static final int[][] ROOK_DIRECTIONS = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+    private static final int[][] BISHOP_DIRECTIONS = { { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final long[] ROOK_TABLE;
+    private static final long[] BISHOP_TABLE;
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            KNIGHT[square] = leaper(square, new int[][] { { 1, 2 }, { 2, 1 }, { 2, -1 }, { 1, -2 },
+                    { -1, -2 }, { -2, -1 }, { -2, 1 }, { -1, 2 } });
+            KING[square] = leaper(square, new int[][] { { 1, 0 }, { 1, 1 }, { 0, 1 }, { -1, 1 },
+                    { -1, 0 }, { -1, -1 }, { 0, -1 }, { 1, -1 } });
+            PAWN[Position.WHITE][square] = leaper(square, new int[][] { { -1, 1 }, { 1, 1 } });
+            PAWN[Position.BLACK][square] = leaper(square, new int[][] { { -1, -1 }, { 1, -1 } });
+        }
+
+        ROOK_TABLE = new long[initMagics(ROOK_DIRECTIONS, ROOK_MASKS, ROOK_SHIFTS, ROOK_OFFSETS)];
+        BISHOP_TABLE = new long[initMagics(BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_SHIFTS, BISHOP_OFFSETS)];
+        fillMagics(ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS, ROOK_TABLE);
+        fillMagics(BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS, BISHOP_TABLE);
+    }
+
+    private Attacks() {
+    }
+
+    public static long rook(int square, long occupied) {
+        int index = (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square]);
+        return ROOK_TABLE[ROOK_OFFSETS[square] + index];
+    }
+
+    public static long bishop(int square, long occupied) {
+        int index = (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square]);
+        return BISHOP_TABLE[BISHOP_OFFSETS[square] + index];
+    }
+
+    public static long queen(int square, long occupied) {
+        return rook(square, occupied) | bishop(square, occupied);
+    }
+
+    /**
+     * Returns the squares attacked by a piece of the given color and type
+     * standing on {@code square}.
+     */
+    public static long of(int color, int type, int square, long occupied) {
+        switch (type) {
+            case Position.PAWN:
+                return PAWN[color][square];
+            case Position.KNIGHT:
+                return KNIGHT[square];
+            case Position.BISHOP:
+                return bishop(square, occupied);
+            case Position.ROOK:
+                return rook(square, occupied);
+            case Position.QUEEN:
+                return queen(square, occupied);
+            case Position.KING:
+                return KING[square];
+            default:
+                return 0L;
+        }
+    }
+
+    private static long leaper(int square, int[][] steps) {
+        long attacks = 0L;
+        int file = square & 7;
+        int rank = square >>> 3;
+
+        for (int[] step : steps) {
+            int f = file + step[0];
+            int r = rank + step[1];
+            if (f >= 0 && f < 8 && r >= 0 && r < 8) {
+                attacks |= 1L << (r * 8 + f);
+            }
+        }
+        return attacks;
+    }
+
+    // Walks the rays from the square, stopping after the first blocker
+    private static long slide(int square, long occupied, int[][] directions, boolean excludeEdges) {
+        long attacks = 0L;
+
+        for (int[] direction : directions) {
+            int f = (square & 7) + direction[0];
+            int r = (square >>> 3) + direction[1];
+
+            while (f >= 0 && f < 8 && r >= 0 && r < 8) {
+                if (excludeEdges) {
+                    // The last square of a ray never blocks anything behind it
+                    int nf = f + direction[0];
+                    int nr = r + direction[1];
+                    if (nf < 0 || nf > 7 || nr < 0 || nr > 7) {
+                        break;
+                    }
+                }
+
+                long bit = 1L << (r * 8 + f);
+                attacks |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                f += direction[0];
+                r += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    private static int initMagics(int[][] directions, long[] masks, int[] shifts, int[] offsets) {
+        int size = 0;
+        for (int square = 0; square < 64; square++) {
+            masks[square] = slide(square, 0L, directions, true);
+            shifts[square] = 64 - Long.bitCount(masks[square]);
+            offsets[square] = size;
+            size += 1 << Long.bitCount(masks[square]);
+        }
+        return size;
+    }
+
+    private static void fillMagics(int[][] directions, long[] masks, long[] magics, int[] shifts,
+            int[] offsets, long[] table) {
+        for (int square = 0; square < 64; square++) {
+            long mask = masks[square];
+
+            // Enumerate every subset of the mask (Carry-Rippler)
+            long subset = 0L;
+            do {
+                int index = (int) ((subset * magics[square]) >>> shifts[square]);
+                table[offsets[square] + index] = slide(square, subset, directions, false);
+                subset = (subset - mask) & mask;
+            } while (subset != 0);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.kern.Logic;
+
+import java.util.Arrays;
+
+import com.kern.Notation.Fen;
+
+/**
+ * The Game class is one game of chess: the {@link Position} and the moves
+ * played on it.
+ *
+ * <p>
+ * All state of a game lives in its instance, the rules only read the
+ * immutable tables of {@link Attacks} and {@link Zobrist}. Any number of games
+ * can therefore be played in one JVM, each on its own thread and without
+ * Swing. A single instance is not thread-safe and must be confined to one
+ * thread at a time.
+ * </p>
+ *
+ * <p>
+ * Moves are checked against the legal moves of the position before they are
+ * played, so the position always stays legal. The GUI ({@code GamePanel}) only
+ * shows one Game and forwards the moves of the mouse and the engine to it.
+ * </p>
+ */
+public class Game {
+    // STATUS
+    public static final int PLAYING = 0;
+    public static final int CHECKMATE = 1;
+    public static final int STALEMATE = 2;
+
+    public final Position position = new Position();
+
+    // MOVES PLAYED, in order
+    private int[] moves = new int[256];
+    private int moveCount;
+
+    // Older moves were overwritten in the undo history of the position
+    private int undoLimit;
+
+    private final int[] legalMoves = new int[MoveGenerator.MAX_MOVES];
+
+    public Game() {
+        reset();
+    }
+
+    /**
+     * Sets up the start position and forgets the moves played.
+     */
+    public void reset() {
+        load(Fen.START);
+    }
+
+    /**
+     * Sets up the position of a FEN record and forgets the moves played.
+     * Throws an IllegalArgumentException when the record is malformed, the
+     * game is left unchanged then.
+     */
+    public void load(String fen) {
+        Position loaded = Fen.parse(fen);
+
+        position.copyFrom(loaded);
+        moveCount = 0;
+        undoLimit = 0;
+    }
+
+    public String toFen() {
+        return Fen.toString(position);
+    }
+
+    public int getSideToMove() {
+        return position.sideToMove;
+    }
+
+    public boolean isCheck() {
+        return position.inCheck();
+    }
+
+    /**
+     * Returns {@link #CHECKMATE} or {@link #STALEMATE} when the side to move
+     * has no legal move, {@link #PLAYING} otherwise.
+     */
+    public int getStatus() {
+        if (MoveGenerator.generate(position, legalMoves) > 0) {
+            return PLAYING;
+        }
+        return position.inCheck() ? CHECKMATE : STALEMATE;
+    }
+
+    /**
+     * Writes the legal moves of the side to move into {@code buffer} and
+     * returns their number.
+     */
+    public int legalMoves(int[] buffer) {
+        return MoveGenerator.generate(position, buffer);
+    }
+
+    /**
+     * Returns the legal move from one square to another, or {@link Move#NONE}.
+     * A pawn reaching the last rank promotes to {@code promotion}. Only the
+     * moves of the piece on {@code from} are generated.
+     */
+    public int findMove(int from, int to, int promotion) {
+        int count = MoveGenerator.generate(position, legalMoves, 0, MoveGenerator.ALL, Position.bit(from));
+
+        for (int i = 0; i < count; i++) {
+            int move = legalMoves[i];
+            if (Move.from(move) == from && Move.to(move) == to
+                    && (!Move.isPromotion(move) || Move.promotion(move) == promotion)) {
+                return move;
+            }
+        }
+        return Move.NONE;
+    }
+
+    public boolean isLegal(int move) {
+        return MoveGenerator.contains(position, move, legalMoves);
+    }
+
+    /**
+     * Plays the move when it is legal and returns whether it was played.
+     */
+    public boolean play(int move) {
+        if (!isLegal(move)) {
+            return false;
+        }
+
+        position.makeMove(move);
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, moveCount * 2);
+        }
+        moves[moveCount++] = move;
+        undoLimit = Math.max(undoLimit, moveCount - Position.HISTORY_SIZE);
+        return true;
+    }
+
+    /**
+     * Takes back the last move. Only the last {@link Position#HISTORY_SIZE}
+     * moves can be taken back.
+     */
+    public boolean undo() {
+        if (moveCount <= undoLimit) {
+            return false;
+        }
+
+        position.unmakeMove(moves[--moveCount]);
+        return true;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getMove(int index) {
+        return moves[index];
+    }
+}
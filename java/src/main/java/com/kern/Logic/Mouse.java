@@ -5,27 +5,54 @@ import java.awt.event.MouseEvent;
 
 public class Mouse extends MouseAdapter {
 
-    public int x, y;
-    public boolean pressed;
+    // Written by the Swing thread, read by the game loop
+    public volatile int x, y;
+    public volatile boolean pressed;
+
+    // System.nanoTime() of the last press, release or drag, to measure input latency
+    public volatile long eventTime;
+
+    // Called after every event, wakes up the game loop
+    private final Runnable onEvent;
+
+    public Mouse() {
+        this(() -> {
+        });
+    }
+
+    public Mouse(Runnable onEvent) {
+        this.onEvent = onEvent;
+    }
 
     @Override
     public void mousePressed(MouseEvent e) {
+        x = e.getX();
+        y = e.getY();
         pressed = true;
+        eventTime = System.nanoTime();
+        onEvent.run();
     }
 
     @Override
     public void mouseReleased(MouseEvent e) {
+        x = e.getX();
+        y = e.getY();
         pressed = false;
+        eventTime = System.nanoTime();
+        onEvent.run();
     }
 
     @Override
     public void mouseDragged(MouseEvent e) {
         x = e.getX();
         y = e.getY();
+        eventTime = System.nanoTime();
+        onEvent.run();
     }
 
     @Override
     public void mouseMoved(MouseEvent e) {
+        // Nothing to update while no button is held
         x = e.getX();
         y = e.getY();
     }
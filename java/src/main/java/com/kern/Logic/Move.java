@@ -0,0 +1,93 @@
+package com.kern.Logic;
+
+/**
+ * The Move class packs a chess move into a single {@code int}.
+ *
+ * <p>
+ * Moves are passed around as plain integers so that move lists are simple
+ * {@code int[]} buffers and generating or storing a move never allocates. The
+ * bits are laid out as follows:
+ * <ul>
+ * <li>bits 0-5 - the square the piece moves from.</li>
+ * <li>bits 6-11 - the square the piece moves to.</li>
+ * <li>bits 12-15 - the {@code CAPTURE}, {@code PROMOTION},
+ * {@code EN_PASSANT} and {@code CASTLING} flags.</li>
+ * <li>bits 16-18 - the piece type a pawn promotes to.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Castling is encoded as the king move, for example e1g1; the rook move is
+ * implied. {@link #NONE} is never a valid move since from and to are equal.
+ * </p>
+ */
+public final class Move {
+    public static final int NONE = 0;
+
+    // FLAGS
+    public static final int CAPTURE = 1 << 12;
+    public static final int PROMOTION = 2 << 12;
+    public static final int EN_PASSANT = 4 << 12;
+    public static final int CASTLING = 8 << 12;
+
+    private static final char[] PROMOTION_LETTERS = { ' ', ' ', 'q', 'n', 'b', 'r' };
+
+    private Move() {
+    }
+
+    public static int of(int from, int to, int flags) {
+        return from | (to << 6) | flags;
+    }
+
+    public static int of(int from, int to, int flags, int promotion) {
+        return from | (to << 6) | flags | PROMOTION | (promotion << 16);
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int promotion(int move) {
+        return (move >>> 16) & 7;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & PROMOTION) != 0;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (move & EN_PASSANT) != 0;
+    }
+
+    public static boolean isCastling(int move) {
+        return (move & CASTLING) != 0;
+    }
+
+    /**
+     * Returns the move in coordinate notation, for example e2e4 or e7e8q.
+     */
+    public static String toString(int move) {
+        if (move == NONE) {
+            return "0000";
+        }
+
+        StringBuilder text = new StringBuilder(5);
+        text.append(squareName(from(move))).append(squareName(to(move)));
+        if (isPromotion(move)) {
+            text.append(PROMOTION_LETTERS[promotion(move)]);
+        }
+        return text.toString();
+    }
+
+    public static String squareName(int square) {
+        return "" + (char) ('a' + (square & 7)) + (char) ('1' + (square >>> 3));
+    }
+}
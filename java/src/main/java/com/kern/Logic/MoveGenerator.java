@@ -0,0 +1,267 @@
+package com.kern.Logic;
+
+import static com.kern.Logic.Position.BISHOP;
+import static com.kern.Logic.Position.BLACK;
+import static com.kern.Logic.Position.KING;
+import static com.kern.Logic.Position.KNIGHT;
+import static com.kern.Logic.Position.PAWN;
+import static com.kern.Logic.Position.QUEEN;
+import static com.kern.Logic.Position.ROOK;
+import static com.kern.Logic.Position.WHITE;
+
+/**
+ * The MoveGenerator class lists all legal moves of a position.
+ *
+ * <p>
+ * Moves are written as packed integers (see {@link Move}) into an
+ * {@code int[]} owned by the caller, so a call never allocates. A buffer of
+ * {@link #MAX_MOVES} entries is always large enough for one position.
+ * </p>
+ *
+ * <p>
+ * The moves are legal as generated, no move is played or tested afterwards.
+ * The attack state of the {@link Position} tells which enemy pieces give
+ * check, which own pieces are pinned and which squares the king must avoid:
+ * <ul>
+ * <li>in double check only the king moves.</li>
+ * <li>in single check the other pieces must capture the checker or step
+ * between it and the king.</li>
+ * <li>a pinned piece stays on the line through its king.</li>
+ * <li>the king never steps on an attacked square.</li>
+ * </ul>
+ * Only en passant, which removes two pieces from a rank at once, is checked
+ * against the occupancy as well. Castling and all four promotions are
+ * included.
+ * </p>
+ *
+ * <p>
+ * A search that looks at the captures first can generate the
+ * {@link #CAPTURES} and the {@link #QUIETS} separately, and ask for the
+ * moves of some pieces only, which makes checking a move remembered from
+ * another position ({@link #contains(Position, int, int[])}) cheap.
+ * </p>
+ */
+public final class MoveGenerator {
+    public static final int MAX_MOVES = 256;
+
+    // KINDS of moves: captures and promotions, all others, or both
+    public static final int CAPTURES = 1;
+    public static final int QUIETS = 2;
+    public static final int ALL = CAPTURES | QUIETS;
+
+    private static final long RANK_1 = 0xFFL;
+    private static final long RANK_3 = 0xFFL << 16;
+    private static final long RANK_6 = 0xFFL << 40;
+    private static final long RANK_8 = 0xFFL << 56;
+
+    private MoveGenerator() {
+    }
+
+    public static int generate(Position position, int[] moves) {
+        return generate(position, moves, 0);
+    }
+
+    /**
+     * Writes the legal moves of the side to move into {@code moves}, starting
+     * at index {@code start}, and returns the index after the last move.
+     */
+    public static int generate(Position position, int[] moves, int start) {
+        return generate(position, moves, start, ALL, ~0L);
+    }
+
+    /**
+     * Writes the legal moves of the given kinds of the pieces standing on
+     * {@code origins} into {@code moves}, starting at index {@code start},
+     * and returns the index after the last move. Promotions count as captures
+     * even when they capture nothing.
+     */
+    public static int generate(Position position, int[] moves, int start, int kinds, long origins) {
+        int us = position.sideToMove;
+        int them = 1 - us;
+        long enemy = position.colors[them];
+        long occupied = position.occupied;
+        int king = position.kingSquare(us);
+        long checkers = position.checkers();
+        long pinned = position.pinned();
+        int count = start;
+
+        // The squares the pieces may move to for the kinds asked for
+        long targetMask = ((kinds & CAPTURES) != 0 ? enemy : 0) | ((kinds & QUIETS) != 0 ? ~occupied : 0);
+
+        // KING, the only piece to move in double check
+        if (king < 64 && (origins & Position.bit(king)) != 0) {
+            long targets = Attacks.KING[king] & targetMask & ~position.dangerSquares();
+            for (; targets != 0; targets &= targets - 1) {
+                int to = Long.numberOfTrailingZeros(targets);
+                moves[count++] = Move.of(king, to, (enemy & Position.bit(to)) != 0 ? Move.CAPTURE : 0);
+            }
+        }
+        if ((checkers & (checkers - 1)) != 0) {
+            return count;
+        }
+
+        // The squares that answer a check: capture the checker or block it
+        long evasions = ~0L;
+        if (checkers != 0) {
+            evasions = checkers | Position.between(king, Long.numberOfTrailingZeros(checkers));
+        }
+
+        // PAWNS
+        long pawns = position.pieces(us, PAWN) & origins;
+        int push = us == WHITE ? 8 : -8;
+        long promotionRank = us == WHITE ? RANK_8 : RANK_1;
+
+        long single = (us == WHITE ? pawns << 8 : pawns >>> 8) & ~occupied;
+        long twoStep = us == WHITE ? (single & RANK_3) << 8 : (single & RANK_6) >>> 8;
+        twoStep &= ~occupied & evasions;
+        single &= evasions;
+
+        // Pushes that promote are captures, the others quiet
+        if ((kinds & CAPTURES) == 0) {
+            single &= ~promotionRank;
+        }
+        if ((kinds & QUIETS) == 0) {
+            single &= promotionRank;
+            twoStep = 0;
+        }
+
+        for (long targets = single; targets != 0; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            if (isFree(pinned, king, to - push, to)) {
+                count = addPawnMoves(moves, count, to - push, to, 0, promotionRank);
+            }
+        }
+
+        for (long targets = twoStep; targets != 0; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            if (isFree(pinned, king, to - 2 * push, to)) {
+                moves[count++] = Move.of(to - 2 * push, to, 0);
+            }
+        }
+
+        long capturers = (kinds & CAPTURES) != 0 ? pawns : 0;
+        for (long from = capturers; from != 0; from &= from - 1) {
+            int square = Long.numberOfTrailingZeros(from);
+            long attacks = Attacks.PAWN[us][square];
+            if ((pinned & Position.bit(square)) != 0) {
+                attacks &= Position.line(king, square);
+            }
+
+            for (long targets = attacks & enemy & evasions; targets != 0; targets &= targets - 1) {
+                int to = Long.numberOfTrailingZeros(targets);
+                count = addPawnMoves(moves, count, square, to, Move.CAPTURE, promotionRank);
+            }
+
+            // Rare enough to test the occupancy, which also finds the pin along the rank
+            if (position.enPassantSquare >= 0 && (attacks & Position.bit(position.enPassantSquare)) != 0) {
+                int move = Move.of(square, position.enPassantSquare, Move.CAPTURE | Move.EN_PASSANT);
+                if (isLegal(position, move)) {
+                    moves[count++] = move;
+                }
+            }
+        }
+
+        // PIECES, a pinned knight can never move
+        for (int type = QUEEN; type <= ROOK; type++) {
+            for (long from = position.pieces(us, type) & origins; from != 0; from &= from - 1) {
+                int square = Long.numberOfTrailingZeros(from);
+                long targets = Attacks.of(us, type, square, occupied) & targetMask & evasions;
+                if ((pinned & Position.bit(square)) != 0) {
+                    targets &= Position.line(king, square);
+                }
+
+                for (; targets != 0; targets &= targets - 1) {
+                    int to = Long.numberOfTrailingZeros(targets);
+                    int flags = (enemy & Position.bit(to)) != 0 ? Move.CAPTURE : 0;
+                    moves[count++] = Move.of(square, to, flags);
+                }
+            }
+        }
+
+        // CASTLING
+        if (position.castlingRights != 0 && king < 64 && checkers == 0 && (kinds & QUIETS) != 0
+                && (origins & Position.bit(king)) != 0) {
+            int kingSide = us == WHITE ? Position.WHITE_KING_SIDE : Position.BLACK_KING_SIDE;
+            int queenSide = us == WHITE ? Position.WHITE_QUEEN_SIDE : Position.BLACK_QUEEN_SIDE;
+            long danger = position.dangerSquares();
+
+            if ((position.castlingRights & kingSide) != 0
+                    && (Position.between(king, king + 3) & occupied) == 0
+                    && (danger & (Position.bit(king + 1) | Position.bit(king + 2))) == 0) {
+                moves[count++] = Move.of(king, king + 2, Move.CASTLING);
+            }
+            if ((position.castlingRights & queenSide) != 0
+                    && (Position.between(king, king - 4) & occupied) == 0
+                    && (danger & (Position.bit(king - 1) | Position.bit(king - 2))) == 0) {
+                moves[count++] = Move.of(king, king - 2, Move.CASTLING);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns true when {@code move} is a legal move of the position. Only
+     * the moves of the piece on its origin are generated, into
+     * {@code buffer}, so this is cheap enough to check a move found in
+     * another position before playing it.
+     */
+    public static boolean contains(Position position, int move, int[] buffer) {
+        if (move == Move.NONE) {
+            return false;
+        }
+
+        int count = generate(position, buffer, 0, ALL, Position.bit(Move.from(move)));
+        for (int i = 0; i < count; i++) {
+            if (buffer[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // A pinned piece may only move along the line through its king
+    private static boolean isFree(long pinned, int king, int from, int to) {
+        return (pinned & Position.bit(from)) == 0 || (Position.line(king, from) & Position.bit(to)) != 0;
+    }
+
+    private static int addPawnMoves(int[] moves, int count, int from, int to, int flags, long promotionRank) {
+        if ((promotionRank & Position.bit(to)) != 0) {
+            moves[count++] = Move.of(from, to, flags, QUEEN);
+            moves[count++] = Move.of(from, to, flags, ROOK);
+            moves[count++] = Move.of(from, to, flags, BISHOP);
+            moves[count++] = Move.of(from, to, flags, KNIGHT);
+            return count;
+        }
+        moves[count++] = Move.of(from, to, flags);
+        return count;
+    }
+
+    /**
+     * Returns true when the pseudo-legal move does not leave the own king
+     * attacked. Only the occupancy is updated for the test, the position is
+     * left untouched.
+     */
+    public static boolean isLegal(Position position, int move) {
+        int us = position.sideToMove;
+        int from = Move.from(move);
+        int to = Move.to(move);
+        long captured = Position.bit(to);
+        long occupied = (position.occupied ^ Position.bit(from)) | captured;
+
+        if (Move.isEnPassant(move)) {
+            int square = us == BLACK ? to + 8 : to - 8;
+            captured |= Position.bit(square);
+            occupied ^= Position.bit(square);
+        }
+
+        int king = position.kingSquare(us);
+        if (king == from) {
+            king = to;
+        } else if (king == 64) {
+            return true;
+        }
+
+        return (position.attackersTo(king, 1 - us, occupied) & ~captured) == 0;
+    }
+}
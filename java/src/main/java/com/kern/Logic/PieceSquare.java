@@ -0,0 +1,140 @@
+package com.kern.Logic;
+
+/**
+ * The PieceSquare class holds the piece-square tables of the evaluation.
+ *
+ * <p>
+ * Every piece kind gets a midgame and an endgame value on every square, the
+ * material value of the piece included, and counts towards the game phase
+ * with its {@link #PHASE} weight: 24 with all pieces on the board, 0 when only
+ * kings and pawns are left. Black's values are White's on the mirrored
+ * square, negated, so the sum over the board is the score for White.
+ * {@link Position} keeps the two sums and the phase up to date in
+ * {@code put} and {@code remove}, so making or taking back a move changes
+ * them by the few squares it touches and the evaluation never walks the
+ * board.
+ * </p>
+ *
+ * <p>
+ * The tables are written below as seen from White, rank 8 first. The square
+ * values follow the well-known simplified evaluation function; the material
+ * values and the endgame tables of pawns and king give passed pawns and an
+ * active king their weight once the pieces are gone.
+ * </p>
+ */
+public final class PieceSquare {
+    // The phase with all pieces on the board
+    public static final int MAX_PHASE = 24;
+
+    // Phase weights indexed by piece type, see Position
+    public static final int[] PHASE = { 0, 0, 4, 1, 1, 2 };
+
+    public static final int[][] MIDGAME = new int[12][64];
+    public static final int[][] ENDGAME = new int[12][64];
+
+    // MATERIAL indexed by piece type
+    private static final int[] MIDGAME_VALUES = { 82, 0, 1025, 337, 365, 477 };
+    private static final int[] ENDGAME_VALUES = { 94, 0, 936, 281, 297, 512 };
+
+    // SQUARES, as seen from White with a8 first
+    private static final int[] PAWN = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0 };
+
+    private static final int[] PAWN_ENDGAME = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            80, 80, 80, 80, 80, 80, 80, 80,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            30, 30, 30, 30, 30, 30, 30, 30,
+            20, 20, 20, 20, 20, 20, 20, 20,
+            10, 10, 10, 10, 10, 10, 10, 10,
+            10, 10, 10, 10, 10, 10, 10, 10,
+            0, 0, 0, 0, 0, 0, 0, 0 };
+
+    private static final int[] KNIGHT = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50 };
+
+    private static final int[] BISHOP = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20 };
+
+    private static final int[] ROOK = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0 };
+
+    private static final int[] QUEEN = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20 };
+
+    private static final int[] KING = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20 };
+
+    private static final int[] KING_ENDGAME = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50 };
+
+    static {
+        // Indexed by piece type, see Position
+        int[][] midgame = { PAWN, KING, QUEEN, KNIGHT, BISHOP, ROOK };
+        int[][] endgame = { PAWN_ENDGAME, KING_ENDGAME, QUEEN, KNIGHT, BISHOP, ROOK };
+
+        for (int type = Position.PAWN; type <= Position.ROOK; type++) {
+            int white = Position.code(Position.WHITE, type);
+            int black = Position.code(Position.BLACK, type);
+            for (int square = 0; square < 64; square++) {
+                // a8 is the first entry of a table, a1 is square 0
+                MIDGAME[white][square] = MIDGAME_VALUES[type] + midgame[type][square ^ 56];
+                ENDGAME[white][square] = ENDGAME_VALUES[type] + endgame[type][square ^ 56];
+                MIDGAME[black][square] = -MIDGAME_VALUES[type] - midgame[type][square];
+                ENDGAME[black][square] = -ENDGAME_VALUES[type] - endgame[type][square];
+            }
+        }
+    }
+
+    private PieceSquare() {
+    }
+}
@@ -0,0 +1,628 @@
+package com.kern.Logic;
+
+/**
+ * The Position class holds the state of a chess board as a set of 64-bit
+ * bitboards.
+ *
+ * <p>
+ * Every piece kind (color and type) owns one {@code long} in which bit
+ * {@code n} is set when such a piece stands on square {@code n}. Squares are
+ * numbered from a1 = 0 to h8 = 63, rank by rank, so White's pawns move towards
+ * higher square numbers. The GUI works with columns and rows counted from the
+ * top-left corner, use {@link #square(int, int)}, {@link #column(int)} and
+ * {@link #row(int)} to convert between the two.
+ * </p>
+ *
+ * <p>
+ * Besides the twelve piece bitboards the class keeps:
+ * <ul>
+ * <li>{@link #colors} - the union of all pieces of each color.</li>
+ * <li>{@link #occupied} - the union of all pieces on the board.</li>
+ * <li>a mailbox of 64 entries to find the piece on a given square without
+ * scanning the bitboards.</li>
+ * <li>the side to move, castling rights, en passant square and move
+ * counters.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Occupancy queries such as "is there a piece between these two squares" are
+ * answered with a single mask and an {@code AND}, independent of the number
+ * of pieces on the board.
+ * </p>
+ *
+ * <p>
+ * The attack state of the side to move (checking pieces, pinned pieces and
+ * the squares its king cannot step on) is computed on first use and kept
+ * until the board changes, so check detection and move generation of one
+ * position share the work. See {@link #checkers()}.
+ * </p>
+ *
+ * <p>
+ * The piece-square sums of the evaluation, {@link #midgame},
+ * {@link #endgame} and {@link #phase}, are kept up to date like the key
+ * whenever a piece is put on or removed from a square (see
+ * {@link PieceSquare}).
+ * </p>
+ *
+ * <p>
+ * Moves are applied with {@link #makeMove(int)} and taken back with
+ * {@link #unmakeMove(int)}. Both only touch the squares involved in the move;
+ * what cannot be recomputed from the move itself (captured piece, castling
+ * rights, en passant square and halfmove clock) is kept in a fixed-size ring
+ * of {@link #HISTORY_SIZE} entries, so searching or replaying a game never
+ * copies the board.
+ * </p>
+ */
+public class Position {
+    // COLORS
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    // PIECE TYPES (same order as Type)
+    public static final int PAWN = 0;
+    public static final int KING = 1;
+    public static final int QUEEN = 2;
+    public static final int KNIGHT = 3;
+    public static final int BISHOP = 4;
+    public static final int ROOK = 5;
+
+    // The mailbox value of an empty square
+    public static final int EMPTY = -1;
+
+    // CASTLING RIGHTS
+    public static final int WHITE_KING_SIDE = 1;
+    public static final int WHITE_QUEEN_SIDE = 2;
+    public static final int BLACK_KING_SIDE = 4;
+    public static final int BLACK_QUEEN_SIDE = 8;
+
+    // Edge files, to stop pawn captures from wrapping around the board
+    private static final long FILE_A = 0x0101010101010101L;
+    private static final long FILE_H = FILE_A << 7;
+
+    // Number of moves that can be taken back, a power of two
+    public static final int HISTORY_SIZE = 1024;
+
+    // Castling rights kept after a piece leaves or arrives on each square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    // Squares strictly between two squares on the same line, 0 if not aligned
+    private static final long[][] BETWEEN = new long[64][64];
+
+    // The whole line through two aligned squares, edge to edge, 0 if not aligned
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            CASTLING_MASK[square] = 15;
+        }
+        CASTLING_MASK[0] &= ~WHITE_QUEEN_SIDE;
+        CASTLING_MASK[4] &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        CASTLING_MASK[7] &= ~WHITE_KING_SIDE;
+        CASTLING_MASK[56] &= ~BLACK_QUEEN_SIDE;
+        CASTLING_MASK[60] &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+        CASTLING_MASK[63] &= ~BLACK_KING_SIDE;
+
+        int[][] directions = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 },
+                { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
+
+        for (int from = 0; from < 64; from++) {
+            for (int[] direction : directions) {
+                long path = 0L;
+                int file = (from & 7) + direction[0];
+                int rank = (from >>> 3) + direction[1];
+
+                while (file >= 0 && file < 8 && rank >= 0 && rank < 8) {
+                    int to = rank * 8 + file;
+                    BETWEEN[from][to] = path;
+                    path |= 1L << to;
+                    file += direction[0];
+                    rank += direction[1];
+                }
+            }
+        }
+
+        for (int from = 0; from < 64; from++) {
+            for (int[] direction : directions) {
+                long line = (1L << from) | ray(from, direction[0], direction[1])
+                        | ray(from, -direction[0], -direction[1]);
+
+                for (long to = ray(from, direction[0], direction[1]); to != 0; to &= to - 1) {
+                    LINE[from][Long.numberOfTrailingZeros(to)] = line;
+                }
+            }
+        }
+    }
+
+    // The squares from a square to the edge of the board in one direction
+    private static long ray(int from, int fileStep, int rankStep) {
+        long ray = 0L;
+        int file = (from & 7) + fileStep;
+        int rank = (from >>> 3) + rankStep;
+
+        while (file >= 0 && file < 8 && rank >= 0 && rank < 8) {
+            ray |= 1L << (rank * 8 + file);
+            file += fileStep;
+            rank += rankStep;
+        }
+        return ray;
+    }
+
+    // BITBOARDS
+    public final long[] pieces = new long[12];
+    public final long[] colors = new long[2];
+    public long occupied;
+    private final int[] board = new int[64];
+
+    // STATE
+    public int sideToMove = WHITE;
+    public int castlingRights;
+    public int enPassantSquare = -1;
+    public int halfmoveClock;
+    public int fullmoveNumber = 1;
+
+    // Zobrist key of the position, see Zobrist
+    public long key;
+
+    // Zobrist key of the pawns alone, for the pawn table of the evaluation
+    public long pawnKey;
+
+    // PIECE-SQUARE SUMS for White and the game phase, see PieceSquare
+    public int midgame;
+    public int endgame;
+    public int phase;
+
+    // ATTACK STATE of the side to move, valid while checkStateSide == sideToMove
+    private int checkStateSide = -1;
+    private long checkers;
+    private long pinned;
+    private long danger;
+
+    // UNDO HISTORY, one packed entry and the previous key per move made
+    private final int[] history = new int[HISTORY_SIZE];
+    private final long[] keyHistory = new long[HISTORY_SIZE];
+    public int ply;
+
+    public Position() {
+        clear();
+    }
+
+    public static int square(int column, int row) {
+        return (7 - row) * 8 + column;
+    }
+
+    public static int column(int square) {
+        return square & 7;
+    }
+
+    public static int row(int square) {
+        return 7 - (square >>> 3);
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static int code(int color, int type) {
+        return color * 6 + type;
+    }
+
+    public static int color(int code) {
+        return code / 6;
+    }
+
+    public static int type(int code) {
+        return code % 6;
+    }
+
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    public static long line(int from, int to) {
+        return LINE[from][to];
+    }
+
+    public void clear() {
+        for (int i = 0; i < pieces.length; i++) {
+            pieces[i] = 0L;
+        }
+        colors[WHITE] = 0L;
+        colors[BLACK] = 0L;
+        occupied = 0L;
+
+        for (int square = 0; square < 64; square++) {
+            board[square] = EMPTY;
+        }
+
+        sideToMove = WHITE;
+        castlingRights = 0;
+        enPassantSquare = -1;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        ply = 0;
+        key = 0L;
+        pawnKey = 0L;
+        midgame = 0;
+        endgame = 0;
+        phase = 0;
+        checkStateSide = -1;
+    }
+
+    /**
+     * Makes this position an exact copy of {@code other}, including the undo
+     * history, so moves made before the copy can still be taken back and
+     * repetitions are still found.
+     */
+    public void copyFrom(Position other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.colors, 0, colors, 0, colors.length);
+        System.arraycopy(other.board, 0, board, 0, board.length);
+        System.arraycopy(other.history, 0, history, 0, HISTORY_SIZE);
+        System.arraycopy(other.keyHistory, 0, keyHistory, 0, HISTORY_SIZE);
+        occupied = other.occupied;
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        ply = other.ply;
+        key = other.key;
+        pawnKey = other.pawnKey;
+        midgame = other.midgame;
+        endgame = other.endgame;
+        phase = other.phase;
+        checkStateSide = -1;
+    }
+
+    public void put(int color, int type, int square) {
+        long bit = bit(square);
+        int code = code(color, type);
+
+        pieces[code] |= bit;
+        colors[color] |= bit;
+        occupied |= bit;
+        board[square] = code;
+        key ^= Zobrist.PIECES[code][square];
+        if (type == PAWN) {
+            pawnKey ^= Zobrist.PIECES[code][square];
+        }
+        midgame += PieceSquare.MIDGAME[code][square];
+        endgame += PieceSquare.ENDGAME[code][square];
+        phase += PieceSquare.PHASE[type];
+        checkStateSide = -1;
+    }
+
+    public void remove(int square) {
+        int code = board[square];
+        if (code == EMPTY) {
+            return;
+        }
+
+        long bit = bit(square);
+        pieces[code] &= ~bit;
+        colors[color(code)] &= ~bit;
+        occupied &= ~bit;
+        board[square] = EMPTY;
+        key ^= Zobrist.PIECES[code][square];
+        if (type(code) == PAWN) {
+            pawnKey ^= Zobrist.PIECES[code][square];
+        }
+        midgame -= PieceSquare.MIDGAME[code][square];
+        endgame -= PieceSquare.ENDGAME[code][square];
+        phase -= PieceSquare.PHASE[type(code)];
+        checkStateSide = -1;
+    }
+
+    public int pieceAt(int square) {
+        return board[square];
+    }
+
+    public boolean isEmpty(int square) {
+        return board[square] == EMPTY;
+    }
+
+    public long pieces(int color, int type) {
+        return pieces[code(color, type)];
+    }
+
+    public boolean inCheck() {
+        return checkers() != 0;
+    }
+
+    /**
+     * Returns the enemy pieces giving check to the side to move.
+     */
+    public long checkers() {
+        updateCheckState();
+        return checkers;
+    }
+
+    /**
+     * Returns the pieces of the side to move that shield their king from an
+     * enemy rook, bishop or queen. A pinned piece may only move along the line
+     * through its king and itself.
+     */
+    public long pinned() {
+        updateCheckState();
+        return pinned;
+    }
+
+    /**
+     * Returns the squares attacked by the side not to move, seen through the
+     * king of the side to move: the squares that king cannot move to.
+     */
+    public long dangerSquares() {
+        updateCheckState();
+        return danger;
+    }
+
+    private void updateCheckState() {
+        if (checkStateSide == sideToMove) {
+            return;
+        }
+
+        int us = sideToMove;
+        int them = 1 - us;
+        int king = kingSquare(us);
+        checkers = 0L;
+        pinned = 0L;
+        danger = attacks(them, occupied & ~pieces(us, KING));
+
+        if (king < 64) {
+            checkers = attackersTo(king, them, occupied);
+
+            // Enemy sliders that would attack the king through exactly one own piece
+            long queens = pieces(them, QUEEN);
+            long snipers = (Attacks.rook(king, colors[them]) & (pieces(them, ROOK) | queens))
+                    | (Attacks.bishop(king, colors[them]) & (pieces(them, BISHOP) | queens));
+
+            for (; snipers != 0; snipers &= snipers - 1) {
+                long blockers = BETWEEN[king][Long.numberOfTrailingZeros(snipers)] & occupied;
+                if (blockers != 0 && (blockers & (blockers - 1)) == 0) {
+                    pinned |= blockers & colors[us];
+                }
+            }
+        }
+
+        checkStateSide = us;
+    }
+
+    /**
+     * Returns every square attacked by a piece of {@code color}, using
+     * {@code occupancy} to stop the sliding pieces.
+     */
+    public long attacks(int color, long occupancy) {
+        long pawns = pieces(color, PAWN);
+        long result = color == WHITE
+                ? ((pawns << 7) & ~FILE_H) | ((pawns << 9) & ~FILE_A)
+                : ((pawns >>> 9) & ~FILE_H) | ((pawns >>> 7) & ~FILE_A);
+
+        for (long knights = pieces(color, KNIGHT); knights != 0; knights &= knights - 1) {
+            result |= Attacks.KNIGHT[Long.numberOfTrailingZeros(knights)];
+        }
+        for (long kings = pieces(color, KING); kings != 0; kings &= kings - 1) {
+            result |= Attacks.KING[Long.numberOfTrailingZeros(kings)];
+        }
+
+        long queens = pieces(color, QUEEN);
+        for (long bishops = pieces(color, BISHOP) | queens; bishops != 0; bishops &= bishops - 1) {
+            result |= Attacks.bishop(Long.numberOfTrailingZeros(bishops), occupancy);
+        }
+        for (long rooks = pieces(color, ROOK) | queens; rooks != 0; rooks &= rooks - 1) {
+            result |= Attacks.rook(Long.numberOfTrailingZeros(rooks), occupancy);
+        }
+        return result;
+    }
+
+    public int kingSquare(int color) {
+        return Long.numberOfTrailingZeros(pieces[code(color, KING)]);
+    }
+
+    /**
+     * Returns true when the path strictly between the two squares holds a piece.
+     */
+    public boolean isPathBlocked(int from, int to) {
+        return (BETWEEN[from][to] & occupied) != 0;
+    }
+
+    public boolean isAttacked(int square, int byColor) {
+        return isAttacked(square, byColor, occupied);
+    }
+
+    /**
+     * Returns true when a piece of {@code byColor} attacks the square, using
+     * {@code occupancy} to decide which squares block the sliding pieces.
+     */
+    public boolean isAttacked(int square, int byColor, long occupancy) {
+        return attackersTo(square, byColor, occupancy) != 0;
+    }
+
+    /**
+     * Returns the pieces of {@code byColor} attacking the square. Every attack
+     * pattern is symmetric, so the attackers are found by looking from the
+     * square itself with each piece type.
+     */
+    public long attackersTo(int square, int byColor, long occupancy) {
+        long queens = pieces(byColor, QUEEN);
+
+        return (Attacks.PAWN[1 - byColor][square] & pieces(byColor, PAWN))
+                | (Attacks.KNIGHT[square] & pieces(byColor, KNIGHT))
+                | (Attacks.KING[square] & pieces(byColor, KING))
+                | (Attacks.bishop(square, occupancy) & (pieces(byColor, BISHOP) | queens))
+                | (Attacks.rook(square, occupancy) & (pieces(byColor, ROOK) | queens));
+    }
+
+    /**
+     * Plays a legal (or pseudo-legal) move produced by {@link MoveGenerator}.
+     */
+    public void makeMove(int move) {
+        int us = sideToMove;
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int code = board[from];
+        int captured = board[to];
+        int captureSquare = to;
+
+        if (Move.isEnPassant(move)) {
+            captureSquare = us == WHITE ? to - 8 : to + 8;
+            captured = board[captureSquare];
+        }
+
+        // Save what the move itself cannot tell us:
+        // bits 0-3 captured piece + 1, 4-7 castling rights, 8-14 en passant
+        // square + 1, 15 and above the halfmove clock
+        history[ply & (HISTORY_SIZE - 1)] = (captured + 1)
+                | (castlingRights << 4)
+                | ((enPassantSquare + 1) << 8)
+                | (halfmoveClock << 15);
+        keyHistory[ply & (HISTORY_SIZE - 1)] = key;
+        ply++;
+
+        // Take the old rights and en passant square out of the key
+        key ^= Zobrist.CASTLING[castlingRights] ^ enPassantKey();
+
+        halfmoveClock++;
+        if (captured != EMPTY) {
+            remove(captureSquare);
+            halfmoveClock = 0;
+        }
+
+        remove(from);
+        put(us, Move.isPromotion(move) ? Move.promotion(move) : type(code), to);
+
+        if (Move.isCastling(move)) {
+            // The rook jumps over the king
+            if (to > from) {
+                remove(from + 3);
+                put(us, ROOK, from + 1);
+            } else {
+                remove(from - 4);
+                put(us, ROOK, from - 1);
+            }
+        }
+
+        enPassantSquare = -1;
+        if (type(code) == PAWN) {
+            halfmoveClock = 0;
+            if (Math.abs(to - from) == 16) {
+                enPassantSquare = (from + to) / 2;
+            }
+        }
+
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+
+        if (us == BLACK) {
+            fullmoveNumber++;
+        }
+        sideToMove = 1 - us;
+
+        key ^= Zobrist.CASTLING[castlingRights] ^ enPassantKey() ^ Zobrist.SIDE;
+    }
+
+    /**
+     * Takes back {@code move}, which must be the last move made.
+     */
+    public void unmakeMove(int move) {
+        int us = 1 - sideToMove;
+        int from = Move.from(move);
+        int to = Move.to(move);
+
+        ply--;
+        int entry = history[ply & (HISTORY_SIZE - 1)];
+        int captured = (entry & 15) - 1;
+
+        sideToMove = us;
+        if (us == BLACK) {
+            fullmoveNumber--;
+        }
+        castlingRights = (entry >>> 4) & 15;
+        enPassantSquare = ((entry >>> 8) & 127) - 1;
+        halfmoveClock = entry >>> 15;
+
+        if (Move.isCastling(move)) {
+            if (to > from) {
+                remove(from + 1);
+                put(us, ROOK, from + 3);
+            } else {
+                remove(from - 1);
+                put(us, ROOK, from - 4);
+            }
+        }
+
+        int type = Move.isPromotion(move) ? PAWN : type(board[to]);
+        remove(to);
+        put(us, type, from);
+
+        if (captured != EMPTY) {
+            int captureSquare = to;
+            if (Move.isEnPassant(move)) {
+                captureSquare = us == WHITE ? to - 8 : to + 8;
+            }
+            put(color(captured), type(captured), captureSquare);
+        }
+
+        key = keyHistory[ply & (HISTORY_SIZE - 1)];
+    }
+
+    /**
+     * Returns the key of the position hashed from scratch, it always equals
+     * {@link #key} unless the state fields were changed directly.
+     */
+    public long computeKey() {
+        long hash = 0L;
+        for (int square = 0; square < 64; square++) {
+            if (board[square] != EMPTY) {
+                hash ^= Zobrist.PIECES[board[square]][square];
+            }
+        }
+
+        hash ^= Zobrist.CASTLING[castlingRights] ^ enPassantKey();
+        if (sideToMove == BLACK) {
+            hash ^= Zobrist.SIDE;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the pawn key hashed from scratch, it always equals
+     * {@link #pawnKey}.
+     */
+    public long computePawnKey() {
+        return hashPawns(pieces[code(WHITE, PAWN)], code(WHITE, PAWN))
+                ^ hashPawns(pieces[code(BLACK, PAWN)], code(BLACK, PAWN));
+    }
+
+    private static long hashPawns(long pawns, int code) {
+        long hash = 0L;
+        for (; pawns != 0; pawns &= pawns - 1) {
+            hash ^= Zobrist.PIECES[code][Long.numberOfTrailingZeros(pawns)];
+        }
+        return hash;
+    }
+
+    // The en passant file only changes the position when a pawn can capture there
+    private long enPassantKey() {
+        if (enPassantSquare < 0
+                || (Attacks.PAWN[1 - sideToMove][enPassantSquare] & pieces(sideToMove, PAWN)) == 0) {
+            return 0L;
+        }
+        return Zobrist.EN_PASSANT[enPassantSquare & 7];
+    }
+
+    /**
+     * Returns true when the current position already occurred since the last
+     * capture or pawn move.
+     */
+    public boolean isRepetition() {
+        int limit = Math.min(halfmoveClock, Math.min(ply, HISTORY_SIZE));
+
+        // The same side is to move every second ply, and it takes at least four
+        for (int back = 4; back <= limit; back += 2) {
+            if (keyHistory[(ply - back) & (HISTORY_SIZE - 1)] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
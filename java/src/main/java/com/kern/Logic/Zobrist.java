@@ -0,0 +1,70 @@
+package com.kern.Logic;
+
+/**
+ * The Zobrist class holds the random numbers used to hash a position.
+ *
+ * <p>
+ * The key of a position is the {@code XOR} of one number for every piece on
+ * its square, one for the side to move when Black is to move, one for the
+ * castling rights and one for the file of the en passant square when a pawn
+ * can actually capture there. Because {@code XOR} is its own inverse,
+ * {@link Position} updates the key incrementally while moves are made instead
+ * of hashing the whole board.
+ * </p>
+ *
+ * <p>
+ * The pawn key is the {@code XOR} of the numbers of the pawns alone. It
+ * changes only on pawn moves, captures of pawns and promotions, so positions
+ * that differ in their pieces but share their pawns share a pawn key.
+ * </p>
+ *
+ * <p>
+ * The numbers come from a fixed seed, so keys are the same on every run and
+ * can be stored on disk.
+ * </p>
+ */
+public final class Zobrist {
+    public static final long[][] PIECES = new long[12][64];
+    public static final long[] CASTLING = new long[16];
+    public static final long[] EN_PASSANT = new long[8];
+    public static final long SIDE;
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+
+        for (int code = 0; code < 12; code++) {
+            for (int square = 0; square < 64; square++) {
+                seed = next(seed);
+                PIECES[code][square] = mix(seed);
+            }
+        }
+
+        // Every combination of rights gets its own number
+        for (int rights = 0; rights < 16; rights++) {
+            seed = next(seed);
+            CASTLING[rights] = rights == 0 ? 0L : mix(seed);
+        }
+
+        for (int file = 0; file < 8; file++) {
+            seed = next(seed);
+            EN_PASSANT[file] = mix(seed);
+        }
+
+        seed = next(seed);
+        SIDE = mix(seed);
+    }
+
+    private Zobrist() {
+    }
+
+    // SplitMix64 step and finaliser
+    private static long next(long seed) {
+        return seed + 0x9E3779B97F4A7C15L;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
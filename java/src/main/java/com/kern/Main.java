@@ -1,24 +1,142 @@
 package com.kern;
 
+import com.kern.Engine.Network;
+import com.kern.Engine.Tablebase;
+import com.kern.Engine.Uci;
 import com.kern.GUI.GamePanel;
+import com.kern.Notation.GameArchive;
+import com.kern.Notation.GameLog;
+import com.kern.Notation.PgnReader;
+import com.kern.Notation.PgnReplayer;
+import com.kern.Notation.PolyglotBook;
+import com.kern.Piece.Sprites;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import javax.swing.JFrame;
 
 public class Main {
 
-    public static GamePanel gp = new GamePanel();
-    
-    public static void main(String[] args) {
-        init();
-        
+    public static GamePanel gp;
+
+    public static void main(String[] args) throws IOException {
+        // The computer plays Black unless two players share the mouse
+        int engineColor = GamePanel.BLACK;
+        int engineThreads = 1;
+        String fen = null;
+        String replay = null;
+        String book = null;
+        String tablebases = null;
+        String network = null;
+        String gameLog = null;
+        String compact = null;
+        boolean uci = false;
+        for (String arg : args) {
+            if (arg.equals("--uci")) {
+                uci = true;
+            } else if (arg.equals("--instrumentation")) {
+                // Read once when the search is loaded, which has not happened yet
+                System.setProperty("kern.instrumentation", "true");
+            } else if (arg.equals("--frame-metrics")) {
+                System.setProperty("kern.frameMetrics", "true");
+            } else if (arg.equals("--two-players")) {
+                engineColor = GamePanel.TWO_PLAYERS;
+            } else if (arg.equals("--engine-white")) {
+                engineColor = GamePanel.WHITE;
+            } else if (arg.startsWith("--threads=")) {
+                engineThreads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--fen=")) {
+                fen = arg.substring("--fen=".length());
+            } else if (arg.startsWith("--replay=")) {
+                replay = arg.substring("--replay=".length());
+            } else if (arg.startsWith("--book=")) {
+                book = arg.substring("--book=".length());
+            } else if (arg.startsWith("--tablebases=")) {
+                tablebases = arg.substring("--tablebases=".length());
+            } else if (arg.startsWith("--nnue=")) {
+                network = arg.substring("--nnue=".length());
+            } else if (arg.startsWith("--game-log=")) {
+                gameLog = arg.substring("--game-log=".length());
+            } else if (arg.startsWith("--compact=")) {
+                compact = arg.substring("--compact=".length());
+            }
+        }
+
+        // A GUI or tournament manager talks to the engine on stdin and stdout
+        if (uci) {
+            new Uci(System.in, System.out).run();
+            return;
+        }
+
+        // Replaying a PGN file checks its games without opening the window
+        if (replay != null) {
+            System.out.println(PgnReplayer.replay(Paths.get(replay), null));
+            return;
+        }
+
+        // Compacting packs the games of a log or PGN file into the game log given
+        if (compact != null) {
+            compact(Paths.get(compact), Paths.get(gameLog != null ? gameLog : compact + ".kgl"));
+            return;
+        }
+
+        init(engineColor, engineThreads);
+        if (fen != null) {
+            gp.setPosition(fen);
+        }
+        if (book != null) {
+            gp.setBook(PolyglotBook.open(Paths.get(book)));
+        }
+        if (tablebases != null) {
+            gp.setTablebase(Tablebase.open(Paths.get(tablebases)));
+        }
+        if (network != null) {
+            gp.setNetwork(Network.load(Paths.get(network)));
+        }
+
+        if (gameLog != null) {
+            GameLog log = GameLog.open(Paths.get(gameLog));
+            gp.setGameLog(log);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    log.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+
         gp.launchGame();
     }
 
-    private static void init() {
+    private static void compact(Path source, Path target) throws IOException {
+        long start = System.nanoTime();
+        int games;
+        if (source.toString().endsWith(".pgn")) {
+            games = GameLog.compact(new PgnReader(source), target);
+        } else {
+            try (GameArchive archive = GameArchive.open(source)) {
+                games = GameLog.compact(archive, target);
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(games + " games, " + Files.size(source) + " -> " + Files.size(target) + " bytes in "
+                + millis + " ms");
+    }
+
+    private static void init(int engineColor, int engineThreads) {
+        // Decode the piece images while Swing starts up
+        Sprites.load();
+
         JFrame window = new JFrame("Chess");
         window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         window.setResizable(false);
 
+        gp = new GamePanel(engineColor, engineThreads);
         window.add(gp);
         window.pack();
 
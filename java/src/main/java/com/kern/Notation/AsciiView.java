@@ -0,0 +1,43 @@
+package com.kern.Notation;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link CharSequence} over a range of ASCII bytes in a {@link ByteBuffer}.
+ * The view is moved with {@link #set}, so one instance serves every line of a
+ * file without copying the bytes.
+ */
+final class AsciiView implements CharSequence {
+    private ByteBuffer buffer;
+    private int start;
+    private int length;
+
+    void set(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.start = start;
+        this.length = end - start;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(start + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(start + from, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+}
@@ -0,0 +1,172 @@
+package com.kern.Notation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+
+import com.kern.Logic.Position;
+
+/**
+ * The EpdReader class streams the positions of an EPD file.
+ *
+ * <p>
+ * Every line of an EPD file holds the first four fields of a FEN record
+ * followed by operations, for example
+ * {@code r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - bm Bb5; id "test 1";}.
+ * Empty lines and lines starting with {@code #} are skipped.
+ * </p>
+ *
+ * <p>
+ * The file is memory-mapped in windows of {@link #WINDOW_SIZE} bytes, so
+ * files of any size are read without loading them and the operating system
+ * does the buffering. {@link #next(Position)} parses the next line straight
+ * out of the mapped bytes into a Position owned by the caller: reading a line
+ * allocates nothing, not even a String. The operations of the line are
+ * available as a {@link CharSequence} view until the next call.
+ * </p>
+ *
+ * <p>
+ * A reader is not thread-safe. To read one file on several threads, give
+ * every thread its own reader and let each take the lines of its own byte
+ * range (see {@link #EpdReader(Path, long, long)}).
+ * </p>
+ */
+public class EpdReader implements Closeable {
+    public static final long WINDOW_SIZE = MappedLines.WINDOW_SIZE;
+    public static final int MAX_LINE_LENGTH = MappedLines.MAX_LINE_LENGTH;
+
+    private final MappedLines lines;
+    private final long end;
+
+    private final AsciiView line = new AsciiView();
+    private final AsciiView operations = new AsciiView();
+
+    public EpdReader(Path file) throws IOException {
+        this(file, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the lines starting in the byte range {@code [from, to)} of the
+     * file. A line that starts before {@code from} belongs to the previous
+     * range, so splitting a file at any offsets reads every line exactly once.
+     */
+    public EpdReader(Path file, long from, long to) throws IOException {
+        lines = new MappedLines(file, from, to);
+        end = to;
+    }
+
+    /**
+     * Loads the next position of the file into {@code position}. Returns false
+     * when there is none left, throws an IllegalArgumentException naming the
+     * line when a line is malformed.
+     */
+    public boolean next(Position position) throws IOException {
+        while (lines.next() && lines.lineOffset < end) {
+            MappedByteBuffer window = lines.window;
+            int lineStart = lines.start;
+            int textEnd = lines.end;
+            while (lineStart < textEnd && window.get(lineStart) == ' ') {
+                lineStart++;
+            }
+            if (lineStart == textEnd || window.get(lineStart) == '#') {
+                continue;
+            }
+
+            line.set(window, lineStart, textEnd);
+            int fieldsEnd;
+            try {
+                fieldsEnd = Fen.load(position, line, 0, line.length());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + lines.lineNumber + ": " + e.getMessage(), e);
+            }
+
+            int operationsStart = lineStart + fieldsEnd;
+            while (operationsStart < textEnd && window.get(operationsStart) == ' ') {
+                operationsStart++;
+            }
+            operations.set(window, operationsStart, textEnd);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the operations of the last line read, valid until the next call
+     * to {@link #next(Position)}.
+     */
+    public CharSequence getOperations() {
+        return operations;
+    }
+
+    /**
+     * Returns the operand of the operation {@code opcode} of the last line
+     * read, without quotes, or null when the line has no such operation.
+     */
+    public String getOperation(String opcode) {
+        CharSequence text = operations;
+        int length = text.length();
+        int i = 0;
+
+        while (i < length) {
+            while (i < length && text.charAt(i) == ' ') {
+                i++;
+            }
+            int nameStart = i;
+            while (i < length && text.charAt(i) != ' ' && text.charAt(i) != ';') {
+                i++;
+            }
+            boolean match = i - nameStart == opcode.length() && regionMatches(text, nameStart, opcode);
+
+            // The operands run to the semicolon, which may also appear inside quotes
+            while (i < length && text.charAt(i) == ' ') {
+                i++;
+            }
+            int operandStart = i;
+            boolean quoted = false;
+            while (i < length && (quoted || text.charAt(i) != ';')) {
+                if (text.charAt(i) == '"') {
+                    quoted = !quoted;
+                }
+                i++;
+            }
+
+            if (match) {
+                int operandEnd = i;
+                while (operandEnd > operandStart && text.charAt(operandEnd - 1) == ' ') {
+                    operandEnd--;
+                }
+                if (operandEnd - operandStart >= 2 && text.charAt(operandStart) == '"'
+                        && text.charAt(operandEnd - 1) == '"') {
+                    operandStart++;
+                    operandEnd--;
+                }
+                return text.subSequence(operandStart, operandEnd).toString();
+            }
+            i++;
+        }
+        return null;
+    }
+
+    private static boolean regionMatches(CharSequence text, int start, String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (text.charAt(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of lines read so far, counted from the start of the
+     * range of this reader.
+     */
+    public long getLineNumber() {
+        return lines.lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lines.close();
+    }
+}
@@ -0,0 +1,273 @@
+package com.kern.Notation;
+
+import com.kern.Logic.Move;
+import com.kern.Logic.Position;
+
+/**
+ * The Fen class reads and writes positions in Forsyth-Edwards Notation.
+ *
+ * <p>
+ * A FEN record holds six fields separated by spaces: the placement of the
+ * pieces from rank 8 to rank 1, the side to move, the castling rights, the en
+ * passant square, the halfmove clock and the fullmove number, for example
+ * {@link #START}. The two counters are optional when reading, so the first
+ * four fields of an EPD record are read the same way.
+ * </p>
+ *
+ * <p>
+ * The parser reads from any {@link CharSequence} between two indexes and
+ * returns where it stopped, so a record can be read straight out of a larger
+ * buffer (see {@link EpdReader}) without copying it into a String.
+ * </p>
+ */
+public final class Fen {
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    // Piece letters indexed by type, White in upper case
+    private static final String LETTERS = "pkqnbr";
+
+    private Fen() {
+    }
+
+    public static Position parse(String fen) {
+        Position position = new Position();
+        load(position, fen);
+        return position;
+    }
+
+    public static void load(Position position, String fen) {
+        load(position, fen, 0, fen.length());
+    }
+
+    /**
+     * Sets up the position from the record in {@code text} between
+     * {@code start} and {@code end} and returns the index after the last field
+     * read. Throws an IllegalArgumentException when the record is malformed or
+     * the position cannot be played: a side without exactly one king, or an
+     * en passant square no double step can have left. Castling rights whose
+     * king or rook is not on its home square are dropped.
+     */
+    public static int load(Position position, CharSequence text, int start, int end) {
+        position.clear();
+        int i = skipSpaces(text, start, end);
+
+        // PLACEMENT
+        int rank = 7;
+        int file = 0;
+        for (; i < end && text.charAt(i) != ' '; i++) {
+            char c = text.charAt(i);
+            if (c == '/') {
+                if (file != 8 || rank == 0) {
+                    throw invalid(text, start, end);
+                }
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+                if (file > 8) {
+                    throw invalid(text, start, end);
+                }
+            } else {
+                int type = LETTERS.indexOf(Character.toLowerCase(c));
+                if (type < 0 || file > 7) {
+                    throw invalid(text, start, end);
+                }
+                position.put(Character.isUpperCase(c) ? Position.WHITE : Position.BLACK, type, rank * 8 + file);
+                file++;
+            }
+        }
+        if (rank != 0 || file != 8) {
+            throw invalid(text, start, end);
+        }
+
+        // SIDE TO MOVE
+        i = skipSpaces(text, i, end);
+        if (i >= end) {
+            throw invalid(text, start, end);
+        }
+        char side = text.charAt(i++);
+        if (side == 'w') {
+            position.sideToMove = Position.WHITE;
+        } else if (side == 'b') {
+            position.sideToMove = Position.BLACK;
+        } else {
+            throw invalid(text, start, end);
+        }
+
+        // CASTLING RIGHTS
+        i = skipSpaces(text, i, end);
+        if (i < end && text.charAt(i) == '-') {
+            i++;
+        } else {
+            for (; i < end && text.charAt(i) != ' '; i++) {
+                switch (text.charAt(i)) {
+                    case 'K':
+                        position.castlingRights |= Position.WHITE_KING_SIDE;
+                        break;
+                    case 'Q':
+                        position.castlingRights |= Position.WHITE_QUEEN_SIDE;
+                        break;
+                    case 'k':
+                        position.castlingRights |= Position.BLACK_KING_SIDE;
+                        break;
+                    case 'q':
+                        position.castlingRights |= Position.BLACK_QUEEN_SIDE;
+                        break;
+                    default:
+                        throw invalid(text, start, end);
+                }
+            }
+        }
+
+        // EN PASSANT
+        i = skipSpaces(text, i, end);
+        if (i < end && text.charAt(i) == '-') {
+            i++;
+        } else {
+            if (i + 1 >= end) {
+                throw invalid(text, start, end);
+            }
+            char epFile = text.charAt(i);
+            char epRank = text.charAt(i + 1);
+            if (epFile < 'a' || epFile > 'h' || epRank != (position.sideToMove == Position.WHITE ? '6' : '3')) {
+                throw invalid(text, start, end);
+            }
+            position.enPassantSquare = (epRank - '1') * 8 + (epFile - 'a');
+            i += 2;
+        }
+
+        checkRules(position, text, start, end);
+
+        // COUNTERS, only in FEN
+        int next = skipSpaces(text, i, end);
+        if (next < end && Character.isDigit(text.charAt(next))) {
+            position.halfmoveClock = 0;
+            for (i = next; i < end && Character.isDigit(text.charAt(i)); i++) {
+                position.halfmoveClock = position.halfmoveClock * 10 + text.charAt(i) - '0';
+            }
+
+            next = skipSpaces(text, i, end);
+            if (next < end && Character.isDigit(text.charAt(next))) {
+                position.fullmoveNumber = 0;
+                for (i = next; i < end && Character.isDigit(text.charAt(i)); i++) {
+                    position.fullmoveNumber = position.fullmoveNumber * 10 + text.charAt(i) - '0';
+                }
+            }
+        }
+
+        position.key = position.computeKey();
+        return i;
+    }
+
+    // Makes the record fit the rules that MoveGenerator and Position rely on
+    private static void checkRules(Position position, CharSequence text, int start, int end) {
+        if (Long.bitCount(position.pieces(Position.WHITE, Position.KING)) != 1
+                || Long.bitCount(position.pieces(Position.BLACK, Position.KING)) != 1) {
+            throw invalid(text, start, end);
+        }
+
+        // A right needs its king and rook at home, or castling conjures up a rook
+        int rights = position.castlingRights;
+        for (int color = Position.WHITE; color <= Position.BLACK; color++) {
+            int home = color == Position.WHITE ? 0 : 56;
+            int kingSide = color == Position.WHITE ? Position.WHITE_KING_SIDE : Position.BLACK_KING_SIDE;
+            int queenSide = color == Position.WHITE ? Position.WHITE_QUEEN_SIDE : Position.BLACK_QUEEN_SIDE;
+            int rook = Position.code(color, Position.ROOK);
+
+            if (position.pieceAt(home + 4) != Position.code(color, Position.KING)) {
+                rights &= ~(kingSide | queenSide);
+            }
+            if (position.pieceAt(home + 7) != rook) {
+                rights &= ~kingSide;
+            }
+            if (position.pieceAt(home) != rook) {
+                rights &= ~queenSide;
+            }
+        }
+        position.castlingRights = rights;
+
+        // The pawn that stepped over the en passant square stands in front of it
+        int square = position.enPassantSquare;
+        if (square >= 0) {
+            int them = 1 - position.sideToMove;
+            int forward = them == Position.WHITE ? 8 : -8;
+            if (position.pieceAt(square + forward) != Position.code(them, Position.PAWN)
+                    || !position.isEmpty(square) || !position.isEmpty(square - forward)) {
+                throw invalid(text, start, end);
+            }
+        }
+    }
+
+    private static int skipSpaces(CharSequence text, int i, int end) {
+        while (i < end && text.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static IllegalArgumentException invalid(CharSequence text, int start, int end) {
+        return new IllegalArgumentException("Invalid FEN: " + text.subSequence(start, end));
+    }
+
+    public static String toString(Position position) {
+        StringBuilder text = new StringBuilder(90);
+        write(position, text);
+        return text.toString();
+    }
+
+    /**
+     * Appends the six fields of the position to {@code text}.
+     */
+    public static void write(Position position, StringBuilder text) {
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int code = position.pieceAt(rank * 8 + file);
+                if (code == Position.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    text.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                char letter = LETTERS.charAt(Position.type(code));
+                text.append(Position.color(code) == Position.WHITE ? Character.toUpperCase(letter) : letter);
+            }
+            if (empty > 0) {
+                text.append((char) ('0' + empty));
+            }
+            if (rank > 0) {
+                text.append('/');
+            }
+        }
+
+        text.append(position.sideToMove == Position.WHITE ? " w " : " b ");
+
+        if (position.castlingRights == 0) {
+            text.append('-');
+        } else {
+            if ((position.castlingRights & Position.WHITE_KING_SIDE) != 0) {
+                text.append('K');
+            }
+            if ((position.castlingRights & Position.WHITE_QUEEN_SIDE) != 0) {
+                text.append('Q');
+            }
+            if ((position.castlingRights & Position.BLACK_KING_SIDE) != 0) {
+                text.append('k');
+            }
+            if ((position.castlingRights & Position.BLACK_QUEEN_SIDE) != 0) {
+                text.append('q');
+            }
+        }
+
+        text.append(' ');
+        if (position.enPassantSquare < 0) {
+            text.append('-');
+        } else {
+            text.append(Move.squareName(position.enPassantSquare));
+        }
+
+        text.append(' ').append(position.halfmoveClock).append(' ').append(position.fullmoveNumber);
+    }
+}
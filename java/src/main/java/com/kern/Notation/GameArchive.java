@@ -0,0 +1,404 @@
+package com.kern.Notation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.kern.Logic.Move;
+import com.kern.Logic.Position;
+
+/**
+ * The GameArchive class reads the games of a file written by
+ * {@link GameLog}.
+ *
+ * <p>
+ * The file is memory-mapped in segments of {@link #SEGMENT_SIZE} bytes that
+ * overlap by {@link #OVERLAP}, so a frame never crosses the end of a segment.
+ * Game {@code n} is found through the index at the end of the file, one read
+ * of its entry, so a game in the middle of millions costs no more than the
+ * first. A file without an index, a log whose program did not close it, is
+ * scanned once on opening instead.
+ * </p>
+ *
+ * <p>
+ * Replaying a game decodes its moves straight from the mapped file, or from
+ * its block inflated into a buffer of the calling thread, and plays them on
+ * the caller's Position without checking them: the moves of a log were legal
+ * when they were written. The last block read by each thread is kept, so
+ * reading the games in order inflates every block once. An archive may be
+ * read by many threads at once.
+ * </p>
+ */
+public final class GameArchive implements Closeable {
+    static final long SEGMENT_SIZE = 1L << 30;
+
+    // Longer than any frame but the index, whose entries are read one by one
+    static final int OVERLAP = 1 << 20;
+
+    private static final byte[] FEN = "FEN".getBytes(StandardCharsets.US_ASCII);
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    // End of the games, where the index frame or the cut off frame starts
+    private final long dataEnd;
+
+    // INDEX, read from the file or, without one, built by scanning it
+    private final long indexStart;
+    private final long[] scannedIndex;
+    private final int count;
+
+    private final ThreadLocal<Cursor> cursors = ThreadLocal.withInitial(Cursor::new);
+
+    /**
+     * The Cursor class holds what one thread needs to read games: its
+     * inflater and the last block it inflated.
+     */
+    private static final class Cursor {
+        final Inflater inflater = new Inflater();
+        byte[] block = new byte[GameLog.BLOCK_SIZE];
+        long blockOffset = -1;
+        int blockLength;
+        int result;
+    }
+
+    private GameArchive(Path file, FileChannel channel) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        size = channel.size();
+
+        int segmentCount = (int) Math.max(1, (size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long start = i * SEGMENT_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(size - start, SEGMENT_SIZE + OVERLAP));
+        }
+
+        if (size < GameLog.HEADER_SIZE || segments[0].getInt(0) != GameLog.MAGIC) {
+            throw new IOException("Not a game log: " + file);
+        }
+
+        long indexOffset = trailerIndexOffset(size);
+        if (indexOffset >= 0) {
+            ByteBuffer frame = slice(indexOffset, size);
+            frame.get();
+            count = GameLog.getVarint(frame) / 8;
+            dataEnd = indexOffset;
+            indexStart = indexOffset + (frame.position() - (int) (indexOffset % SEGMENT_SIZE));
+            scannedIndex = null;
+        } else {
+            long[] index = new long[1024];
+            int games = 0;
+            long offset = GameLog.HEADER_SIZE;
+            long end = offset;
+
+            // Walk the frames up to the first one cut off, remembering the games
+            while (offset < size) {
+                ByteBuffer frame = slice(offset, size);
+                int start = frame.position();
+                int type;
+                int length;
+                try {
+                    type = frame.get();
+                    length = GameLog.getVarint(frame);
+                } catch (BufferUnderflowException | IllegalArgumentException e) {
+                    break;
+                }
+                long next = offset + (frame.position() - start) + length;
+                if (type < GameLog.GAME || type > GameLog.INDEX || length < 0 || next > size) {
+                    break;
+                }
+
+                if (type == GameLog.GAME) {
+                    index = add(index, games++, offset << 16);
+                } else if (type == GameLog.BLOCK) {
+                    Cursor cursor = cursors.get();
+                    inflate(cursor, offset);
+                    ByteBuffer block = ByteBuffer.wrap(cursor.block, 0, cursor.blockLength);
+                    while (block.hasRemaining()) {
+                        index = add(index, games++, offset << 16 | block.position());
+                        skipTags(block, null);
+                        block.get();
+                        int moves = GameLog.getVarint(block);
+                        block.position(block.position() + 2 * moves);
+                    }
+                }
+                offset = next;
+                if (type != GameLog.INDEX) {
+                    end = offset;
+                }
+            }
+
+            dataEnd = end;
+            indexStart = -1;
+            scannedIndex = index;
+            count = games;
+        }
+    }
+
+    public static GameArchive open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new GameArchive(file, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of games.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Sets up {@code position} at the start of the game, plays its moves on
+     * it and returns how many there are. The first moves, as many as fit, are
+     * stored in {@code moves}, which may be null.
+     */
+    public int replay(int game, Position position, int[] moves) {
+        return read(game, position, moves, null);
+    }
+
+    /**
+     * Returns the tags of the game, in the order they were written.
+     */
+    public Map<String, String> tags(int game) {
+        Map<String, String> tags = new LinkedHashMap<>();
+        read(game, null, null, tags);
+        return tags;
+    }
+
+    /**
+     * Returns the result of the game, one of {@link GameLog#RESULTS}.
+     */
+    public String result(int game) {
+        read(game, null, null, null);
+        return GameLog.RESULTS[cursors.get().result];
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Where the games end, for a log that appends to the file
+    long dataEnd() {
+        return dataEnd;
+    }
+
+    long[] index() {
+        long[] index = new long[count];
+        for (int i = 0; i < count; i++) {
+            index[i] = entry(i);
+        }
+        return index;
+    }
+
+    private long entry(int game) {
+        if (game < 0 || game >= count) {
+            throw new IndexOutOfBoundsException("Game " + game + " of " + count);
+        }
+        if (scannedIndex != null) {
+            return scannedIndex[game];
+        }
+        long offset = indexStart + 8L * game;
+        return segments[(int) (offset / SEGMENT_SIZE)].getLong((int) (offset % SEGMENT_SIZE));
+    }
+
+    // The offset of the index frame the trailer names, or -1 when the file has no valid trailer
+    private long trailerIndexOffset(long size) {
+        long trailer = size - GameLog.TRAILER_SIZE;
+        if (trailer < GameLog.HEADER_SIZE) {
+            return -1;
+        }
+        ByteBuffer data = slice(trailer, size);
+        long indexOffset = data.getLong(data.position());
+        if (data.getInt(data.position() + 8) != GameLog.INDEX_MAGIC || indexOffset < GameLog.HEADER_SIZE
+                || indexOffset >= trailer) {
+            return -1;
+        }
+
+        ByteBuffer frame = slice(indexOffset, size);
+        int start = frame.position();
+        if (frame.get() != GameLog.INDEX) {
+            return -1;
+        }
+        int length = GameLog.getVarint(frame);
+        return indexOffset + (frame.position() - start) + length == trailer ? indexOffset : -1;
+    }
+
+    // The mapped bytes from offset up to limit, or the end of the segment holding offset
+    private ByteBuffer slice(long offset, long limit) {
+        int segment = (int) (offset / SEGMENT_SIZE);
+        long segmentStart = segment * SEGMENT_SIZE;
+        ByteBuffer data = segments[segment].duplicate();
+        data.limit((int) Math.min(data.capacity(), limit - segmentStart));
+        data.position((int) (offset - segmentStart));
+        return data;
+    }
+
+    private static long[] add(long[] index, int games, long entry) {
+        if (games == index.length) {
+            index = Arrays.copyOf(index, 2 * games);
+        }
+        index[games] = entry;
+        return index;
+    }
+
+    // READING A GAME
+
+    private int read(int game, Position position, int[] moves, Map<String, String> tags) {
+        Cursor cursor = cursors.get();
+        long entry = entry(game);
+        long offset = entry >>> 16;
+
+        ByteBuffer data = slice(offset, dataEnd);
+        boolean loose = data.get(data.position()) == GameLog.GAME;
+        if (loose) {
+            data.get();
+            GameLog.getVarint(data);
+        } else {
+            inflate(cursor, offset);
+            data = ByteBuffer.wrap(cursor.block, 0, cursor.blockLength);
+            data.position((int) (entry & 0xFFFF));
+        }
+
+        String fen = skipTags(data, tags);
+        if (position != null) {
+            Fen.load(position, fen != null ? fen : Fen.START);
+        }
+
+        int moveCount = 0;
+        if (!loose) {
+            cursor.result = data.get() & 3;
+            moveCount = GameLog.getVarint(data);
+            if (position == null) {
+                return moveCount;
+            }
+            for (int i = 0; i < moveCount; i++) {
+                play(game, position, moves, i, data.getShort() & 0xFFFF);
+            }
+            return moveCount;
+        }
+
+        // The moves of a log are frames up to its result or the next game
+        cursor.result = 0;
+        while (data.hasRemaining()) {
+            int type = data.get();
+            int length = GameLog.getVarint(data);
+            if (type == GameLog.MOVE) {
+                if (position != null) {
+                    play(game, position, moves, moveCount, data.getShort(data.position()) & 0xFFFF);
+                }
+                moveCount++;
+            } else if (type == GameLog.RESULT) {
+                cursor.result = data.get(data.position()) & 3;
+                break;
+            } else {
+                break;
+            }
+            data.position(data.position() + length);
+        }
+        return moveCount;
+    }
+
+    private static void play(int game, Position position, int[] moves, int index, int code) {
+        int move = GameLog.decode(position, code);
+        if (move == Move.NONE) {
+            throw new IllegalArgumentException("Game " + game + ": move " + (index + 1) + " has no piece to move");
+        }
+        if (moves != null && index < moves.length) {
+            moves[index] = move;
+        }
+        position.makeMove(move);
+    }
+
+    // Reads past the tags, into the map when there is one, and returns the FEN tag
+    private static String skipTags(ByteBuffer data, Map<String, String> tags) {
+        String fen = null;
+        int tagCount = GameLog.getVarint(data);
+        for (int i = 0; i < tagCount; i++) {
+            int nameLength = GameLog.getVarint(data);
+            int name = data.position();
+            data.position(name + nameLength);
+            int valueLength = GameLog.getVarint(data);
+            int value = data.position();
+            data.position(value + valueLength);
+
+            if (tags != null) {
+                tags.put(string(data, name, nameLength), string(data, value, valueLength));
+            }
+            if (nameLength == FEN.length && data.get(name) == FEN[0] && data.get(name + 1) == FEN[1]
+                    && data.get(name + 2) == FEN[2]) {
+                fen = string(data, value, valueLength);
+            }
+        }
+        return fen;
+    }
+
+    private static String string(ByteBuffer data, int start, int length) {
+        byte[] bytes = new byte[length];
+        data.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Inflates the block frame at offset into the cursor, unless it holds it already
+    private void inflate(Cursor cursor, long offset) {
+        if (cursor.blockOffset == offset) {
+            return;
+        }
+        ByteBuffer frame = slice(offset, size);
+        frame.get();
+        int length = GameLog.getVarint(frame);
+        int end = frame.position() + length;
+        int rawLength = GameLog.getVarint(frame);
+        frame.limit(end);
+
+        if (rawLength > cursor.block.length) {
+            cursor.block = new byte[rawLength];
+        }
+        cursor.blockOffset = -1;
+
+        Inflater inflater = cursor.inflater;
+        inflater.reset();
+        inflater.setInput(frame);
+        try {
+            int inflated = 0;
+            while (inflated < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(cursor.block, inflated, rawLength - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != rawLength) {
+                throw new IllegalArgumentException("Block at byte " + offset + " of " + file + " is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Block at byte " + offset + " of " + file + " is corrupt", e);
+        }
+        cursor.blockOffset = offset;
+        cursor.blockLength = rawLength;
+    }
+}
@@ -0,0 +1,512 @@
+package com.kern.Notation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import com.kern.Logic.Move;
+import com.kern.Logic.Position;
+
+/**
+ * The GameLog class writes games to a compact binary file, move by move as
+ * they are played. {@link GameArchive} reads them back.
+ *
+ * <p>
+ * The file is a {@link #MAGIC} number followed by frames, each a type byte,
+ * the length of its payload as a varint and the payload:
+ * <ul>
+ * <li>GAME - starts a game: its tags, a varint count then every name and
+ * value as a varint length and UTF-8 bytes. A game that does not start from
+ * the initial position has the FEN tag, as in PGN.</li>
+ * <li>MOVE - one move of the game, in 16 bits (see {@link #encode(int)}).</li>
+ * <li>RESULT - ends the game: the index of its result in {@link #RESULTS}. A
+ * game without one was not finished.</li>
+ * <li>BLOCK - complete games compressed together with Deflate, at most
+ * {@link #BLOCK_SIZE} bytes of them, or a single larger game. A game in a block is its tags as above,
+ * its result byte, a varint move count and the moves.</li>
+ * <li>INDEX - where every game starts, 8 bytes per game: the offset of its
+ * GAME or BLOCK frame shifted left by 16 bits, plus its offset inside the
+ * inflated block.</li>
+ * </ul>
+ * The last {@link #TRAILER_SIZE} bytes are the offset of the INDEX frame and
+ * {@link #INDEX_MAGIC}, so a reader finds game {@code n} without reading the
+ * games before it.
+ * </p>
+ *
+ * <p>
+ * A move is written as soon as it is played, so when the program dies the
+ * file holds every move up to the last one. Only the index is written on
+ * {@link #close()}: opening a file without one scans its frames, drops a frame
+ * cut off at the end and rebuilds the index. Blocks are written by
+ * {@link #compact(GameArchive, Path)}, which packs the games of a log, or of a
+ * PGN file, into a few bytes per move.
+ * </p>
+ */
+public final class GameLog implements Closeable {
+    // FILE FORMAT
+    static final int MAGIC = 'K' << 24 | 'G' << 16 | 'L' << 8 | '1';
+    static final int INDEX_MAGIC = 'K' << 24 | 'G' << 16 | 'I' << 8 | '1';
+    static final int HEADER_SIZE = 4;
+    static final int TRAILER_SIZE = 12;
+
+    // FRAME TYPES
+    static final int GAME = 1;
+    static final int MOVE = 2;
+    static final int RESULT = 3;
+    static final int BLOCK = 4;
+    static final int INDEX = 5;
+
+    // Inflated bytes of a block, at most, unless one game is larger. Reading a
+    // game inflates its whole block, 16 KB compress within 2% of 64 KB and
+    // inflate 4 times faster
+    public static final int BLOCK_SIZE = 1 << 14;
+
+    // RESULTS by the byte written for them
+    public static final String[] RESULTS = { PgnReader.UNKNOWN, PgnReader.WHITE_WINS, PgnReader.BLACK_WINS,
+            PgnReader.DRAW };
+
+    private final Path file;
+    private final FileChannel channel;
+    private long end;
+
+    // INDEX of the games in the file, see INDEX above
+    private long[] index;
+    private int count;
+
+    private boolean inGame;
+    private ByteBuffer frame = ByteBuffer.allocate(256);
+
+    private GameLog(Path file, FileChannel channel, long end, long[] index, int count) {
+        this.file = file;
+        this.channel = channel;
+        this.end = end;
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Opens a log to append games to, creating it when it does not exist.
+     * The index at the end of an existing log is dropped until
+     * {@link #close()} writes it again.
+     */
+    public static GameLog open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).flip();
+                write(channel, header, 0);
+                return new GameLog(file, channel, HEADER_SIZE, new long[64], 0);
+            }
+
+            long end;
+            long[] index;
+            try (GameArchive archive = GameArchive.open(file)) {
+                end = archive.dataEnd();
+                index = archive.index();
+            }
+            channel.truncate(end);
+            return new GameLog(file, channel, end, Arrays.copyOf(index, Math.max(64, index.length)), index.length);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of games in the log, the current one included.
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Starts a game with the tags, in their order. A game that was not ended
+     * keeps no result.
+     */
+    public synchronized void beginGame(Map<String, String> tags) throws IOException {
+        frame.clear();
+        putTags(tags);
+        long start = end;
+        writeFrame(GAME);
+        addIndex(start << 16);
+        inGame = true;
+    }
+
+    /**
+     * Appends a move of the current game, which reaches the operating system
+     * before this returns.
+     */
+    public synchronized void append(int move) throws IOException {
+        if (!inGame) {
+            throw new IllegalStateException("No game was begun");
+        }
+        frame.clear();
+        frame.putShort((short) encode(move));
+        writeFrame(MOVE);
+    }
+
+    /**
+     * Ends the current game with a result of {@link PgnReader}, and forces
+     * the game to the disk.
+     */
+    public synchronized void endGame(String result) throws IOException {
+        if (!inGame) {
+            throw new IllegalStateException("No game was begun");
+        }
+        frame.clear();
+        frame.put((byte) resultCode(result));
+        writeFrame(RESULT);
+        inGame = false;
+        channel.force(false);
+    }
+
+    /**
+     * Writes the index and closes the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            writeIndex(channel, end, index, count);
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void putTags(Map<String, String> tags) {
+        putVarint(tags.size());
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            putString(tag.getKey());
+            putString(tag.getValue());
+        }
+    }
+
+    private void putString(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        putVarint(bytes.length);
+        ensure(bytes.length);
+        frame.put(bytes);
+    }
+
+    private void putVarint(int value) {
+        ensure(5);
+        putVarint(frame, value);
+    }
+
+    private void ensure(int bytes) {
+        if (frame.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * frame.capacity(), frame.position() + bytes));
+            frame = larger.put(frame.flip());
+        }
+    }
+
+    private void addIndex(long entry) {
+        if (count == index.length) {
+            index = Arrays.copyOf(index, 2 * count);
+        }
+        index[count++] = entry;
+    }
+
+    // Writes the payload in frame behind its type and length, in one write
+    private void writeFrame(int type) throws IOException {
+        ByteBuffer payload = frame.flip();
+        ByteBuffer buffer = ByteBuffer.allocate(6 + payload.remaining());
+        buffer.put((byte) type);
+        putVarint(buffer, payload.remaining());
+        buffer.put(payload).flip();
+        end += write(channel, buffer, end);
+    }
+
+    private static int write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    // Writes the index frame at end and the trailer after it
+    private static void writeIndex(FileChannel channel, long end, long[] index, int count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(6 + 8 * count + TRAILER_SIZE);
+        buffer.put((byte) INDEX);
+        putVarint(buffer, 8 * count);
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(index[i]);
+        }
+        buffer.putLong(end).putInt(INDEX_MAGIC).flip();
+        write(channel, buffer, end);
+    }
+
+    // MOVE ENCODING
+
+    /**
+     * Returns the move in 16 bits: the from square in bits 0-5, the to square
+     * in bits 6-11 and the promotion type in bits 12-14, 0 when it is none.
+     * The flags are not kept, {@link #decode(Position, int)} tells them from
+     * the position.
+     */
+    public static int encode(int move) {
+        int code = Move.from(move) | Move.to(move) << 6;
+        return Move.isPromotion(move) ? code | Move.promotion(move) << 12 : code;
+    }
+
+    /**
+     * Returns the move of {@code position} that {@code code} encodes, or
+     * {@link Move#NONE} when the side to move has no piece on its from square.
+     */
+    public static int decode(Position position, int code) {
+        int from = code & 63;
+        int to = code >>> 6 & 63;
+        int promotion = code >>> 12 & 7;
+
+        int piece = position.pieceAt(from);
+        if (piece == Position.EMPTY || Position.color(piece) != position.sideToMove) {
+            return Move.NONE;
+        }
+
+        int flags = 0;
+        int type = Position.type(piece);
+        if (!position.isEmpty(to)) {
+            flags = Move.CAPTURE;
+        } else if (type == Position.PAWN && (from - to & 7) != 0) {
+            flags = Move.CAPTURE | Move.EN_PASSANT;
+        } else if (type == Position.KING && Math.abs(to - from) == 2) {
+            flags = Move.CASTLING;
+        }
+
+        if (promotion != 0) {
+            return Move.of(from, to, flags | Move.PROMOTION, promotion);
+        }
+        return Move.of(from, to, flags);
+    }
+
+    static int resultCode(String result) {
+        for (int i = 1; i < RESULTS.length; i++) {
+            if (RESULTS[i].equals(result)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    // VARINTS, 7 bits a byte, the low bits first
+
+    static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at " + buffer.position());
+    }
+
+    // COMPACTION
+
+    /**
+     * Writes the games of the archive to a new file in blocks, and returns
+     * the number of games written. Unfinished games are kept.
+     */
+    public static int compact(GameArchive archive, Path target) throws IOException {
+        try (BlockWriter writer = new BlockWriter(target)) {
+            Position position = new Position();
+            int[] moves = new int[256];
+            for (int game = 0; game < archive.size(); game++) {
+                int moveCount = archive.replay(game, position, moves);
+                if (moveCount > moves.length) {
+                    moves = new int[Math.max(moveCount, 2 * moves.length)];
+                    archive.replay(game, position, moves);
+                }
+                writer.add(archive.tags(game), archive.result(game), moves, moveCount);
+            }
+            return writer.count;
+        }
+    }
+
+    /**
+     * Writes the legal games of a PGN file to a new file in blocks, with
+     * the tags of their seven tag roster and FEN, and returns the number of games
+     * written. Games with an illegal move are skipped.
+     */
+    public static int compact(PgnReader reader, Path target) throws IOException {
+        String[] names = { "Event", "Site", "Date", "Round", "White", "Black", "SetUp", "FEN" };
+        try (BlockWriter writer = new BlockWriter(target)) {
+            Position position = new Position();
+            Map<String, String> tags = new LinkedHashMap<>();
+            int[] moves = new int[256];
+            while (true) {
+                try {
+                    if (!reader.next(position)) {
+                        break;
+                    }
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+
+                tags.clear();
+                for (String name : names) {
+                    String value = reader.getTag(name);
+                    if (value != null) {
+                        tags.put(name, value);
+                    }
+                }
+                int moveCount = reader.getMoveCount();
+                if (moveCount > moves.length) {
+                    moves = new int[Math.max(moveCount, 2 * moves.length)];
+                }
+                for (int i = 0; i < moveCount; i++) {
+                    moves[i] = reader.getMove(i);
+                }
+                String result = reader.getResult() != null ? reader.getResult() : tags.get("Result");
+                writer.add(tags, result, moves, moveCount);
+            }
+            return writer.count;
+        }
+    }
+
+    /**
+     * The BlockWriter class packs games into blocks of a new file.
+     */
+    private static final class BlockWriter implements Closeable {
+        private final FileChannel channel;
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private long end = HEADER_SIZE;
+
+        private long[] index = new long[1024];
+        private int count;
+
+        // The block being filled, and the first game in it
+        private ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        private int blockStart;
+        private ByteBuffer game = ByteBuffer.allocate(1024);
+        private byte[] compressed = new byte[BLOCK_SIZE + 1024];
+
+        BlockWriter(Path target) throws IOException {
+            channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            write(channel, ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).flip(), 0);
+        }
+
+        void add(Map<String, String> tags, String result, int[] moves, int moveCount) throws IOException {
+            // A game is written whole to a scratch buffer first, to see if it fits the block
+            game.clear();
+            ensure(5);
+            putVarint(game, tags.size());
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                putString(tag.getKey());
+                putString(tag.getValue());
+            }
+            ensure(6 + 2 * moveCount);
+            game.put((byte) resultCode(result));
+            putVarint(game, moveCount);
+            for (int i = 0; i < moveCount; i++) {
+                game.putShort((short) encode(moves[i]));
+            }
+            game.flip();
+
+            if (block.position() + game.remaining() > BLOCK_SIZE) {
+                flush();
+            }
+            if (game.remaining() > block.capacity()) {
+                block = ByteBuffer.allocate(game.remaining());
+            }
+
+            if (count == index.length) {
+                index = Arrays.copyOf(index, 2 * count);
+            }
+            index[count++] = block.position();
+            block.put(game);
+        }
+
+        private void putString(String text) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            ensure(5 + bytes.length);
+            putVarint(game, bytes.length);
+            game.put(bytes);
+        }
+
+        private void ensure(int bytes) {
+            if (game.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * game.capacity(), game.position() + bytes));
+                game = larger.put(game.flip());
+            }
+        }
+
+        // Compresses the block and points the index entries of its games at the frame
+        private void flush() throws IOException {
+            if (block.position() == 0) {
+                return;
+            }
+            deflater.reset();
+            deflater.setInput(block.array(), 0, block.position());
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, 2 * length);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+
+            ByteBuffer frame = ByteBuffer.allocate(16 + length);
+            frame.put((byte) BLOCK);
+            putVarint(frame, varintSize(block.position()) + length);
+            putVarint(frame, block.position());
+            frame.put(compressed, 0, length).flip();
+
+            for (int i = blockStart; i < count; i++) {
+                index[i] |= end << 16;
+            }
+            end += write(channel, frame, end);
+            blockStart = count;
+            block.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                writeIndex(channel, end, index, count);
+                channel.force(true);
+            } finally {
+                deflater.end();
+                channel.close();
+            }
+        }
+    }
+
+    static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
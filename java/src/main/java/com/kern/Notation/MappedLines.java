@@ -0,0 +1,140 @@
+package com.kern.Notation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The MappedLines class walks the lines of a memory-mapped text file.
+ *
+ * <p>
+ * The file is mapped in windows of at most {@link #WINDOW_SIZE} bytes that
+ * overlap by {@link #MAX_LINE_LENGTH}, so a line never crosses the end of a
+ * window. After {@link #next()} the current line is the range
+ * {@code [start, end)} of {@link #window}, without its line break; the readers
+ * of this package parse it from there without copying it.
+ * </p>
+ */
+final class MappedLines implements Closeable {
+    static final long WINDOW_SIZE = 1L << 30;
+
+    // The longest line accepted, windows overlap by this much
+    static final int MAX_LINE_LENGTH = 1 << 16;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long rangeEnd;
+
+    MappedByteBuffer window;
+    private long windowStart;
+    private long windowEnd;
+
+    // THE CURRENT LINE, its file offset and number
+    int start;
+    int end;
+    long lineOffset;
+    long lineNumber;
+
+    // File offset of the next line
+    private long offset;
+
+    // First byte of the line before the first one, a line break when empty
+    private byte previousFirst = '\n';
+
+    /**
+     * Walks the lines of the file starting at or after {@code from}. The lines
+     * are read to the end of the file; {@code to} only tells how far the
+     * caller expects to read, so no more than that is mapped at once.
+     */
+    MappedLines(Path file, long from, long to) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        size = channel.size();
+        rangeEnd = Math.min(to, size);
+        offset = Math.min(from, size);
+
+        if (offset > 0) {
+            // Skip the rest of the line that started before, and note how it began
+            map(Math.max(0, offset - 1 - MAX_LINE_LENGTH));
+            long newline = offset - 1;
+            while (newline < windowEnd && byteAt(newline) != '\n') {
+                newline++;
+            }
+            long previous = newline;
+            while (previous > windowStart && byteAt(previous - 1) != '\n') {
+                previous--;
+            }
+            if (previous < newline) {
+                previousFirst = byteAt(previous);
+            }
+            offset = newline + 1;
+        }
+    }
+
+    private byte byteAt(long fileOffset) {
+        return window.get((int) (fileOffset - windowStart));
+    }
+
+    private void map(long from) throws IOException {
+        long length = Math.min(WINDOW_SIZE, Math.max(MAX_LINE_LENGTH, rangeEnd - from)) + MAX_LINE_LENGTH;
+        windowStart = from;
+        windowEnd = Math.min(size, from + length);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+    }
+
+    /**
+     * Moves to the next line and returns false at the end of the file. Throws
+     * an IllegalArgumentException when the line is longer than
+     * {@link #MAX_LINE_LENGTH}, the rest of the file is skipped then.
+     */
+    boolean next() throws IOException {
+        if (offset >= size) {
+            return false;
+        }
+
+        // Move the window once the next line might not fit in it anymore
+        if (window == null || offset + MAX_LINE_LENGTH > windowEnd && windowEnd < size) {
+            map(offset);
+        }
+
+        int lineStart = (int) (offset - windowStart);
+        int limit = (int) (windowEnd - windowStart);
+        int lineEnd = lineStart;
+        while (lineEnd < limit && window.get(lineEnd) != '\n') {
+            lineEnd++;
+        }
+        if (lineEnd == limit && windowEnd < size) {
+            // The end of the line is unknown, so nothing after it can be read
+            offset = size;
+            throw new IllegalArgumentException("Line " + (lineNumber + 1) + " is longer than "
+                    + MAX_LINE_LENGTH + " bytes");
+        }
+
+        lineOffset = offset;
+        offset = windowStart + lineEnd + 1;
+        lineNumber++;
+
+        start = lineStart;
+        end = lineEnd;
+        if (end > start && window.get(end - 1) == '\r') {
+            end--;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first byte of the line before the first line read, or a
+     * line break when that line is empty or there is none.
+     */
+    byte previousFirst() {
+        return previousFirst;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,412 @@
+package com.kern.Notation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import com.kern.Logic.Move;
+import com.kern.Logic.MoveGenerator;
+import com.kern.Logic.Position;
+
+/**
+ * The PgnReader class streams and replays the games of a PGN file.
+ *
+ * <p>
+ * Every game of a PGN file is a section of tag lines such as
+ * {@code [White "Kasparov, Garry"]} followed by the movetext, the moves in
+ * SAN with move numbers, comments, variations and the result, for example
+ * {@code 1. e4 e5 2. Nf3 {main line} Nc6 (2... d6) 1-0}. A game starts at a
+ * tag line that does not follow another tag line.
+ * </p>
+ *
+ * <p>
+ * {@link #next(Position)} reads the next game straight out of the
+ * memory-mapped file and replays its moves on a Position owned by the
+ * caller, starting from the start position or from the {@code FEN} tag.
+ * Every move is matched against the legal moves of the position (see
+ * {@link San}), so a game that is read is a legal game. Comments, variations
+ * and annotations are skipped. Reading a game allocates nothing once the
+ * buffers have grown to the longest game; tags are only turned into Strings
+ * when asked for.
+ * </p>
+ *
+ * <p>
+ * A reader is not thread-safe. To read one file on several threads, give
+ * every thread its own reader for a byte range of the file (see
+ * {@link #PgnReader(Path, long, long)} and {@link PgnReplayer}).
+ * </p>
+ */
+public class PgnReader implements Closeable {
+    // RESULTS
+    public static final String WHITE_WINS = "1-0";
+    public static final String BLACK_WINS = "0-1";
+    public static final String DRAW = "1/2-1/2";
+    public static final String UNKNOWN = "*";
+
+    /**
+     * Receives the moves and games while a reader replays them, on the thread
+     * that reads.
+     */
+    public interface Listener {
+        /**
+         * Called before a move is played, with the position it is played in.
+         */
+        default void move(Position position, int move) {
+        }
+
+        /**
+         * Called after the last move of every legal game, with the final
+         * position.
+         */
+        default void game(PgnReader reader, Position position) {
+        }
+    }
+
+    private final MappedLines lines;
+    private final long end;
+    private Listener listener;
+
+    // The current line starts the next game, it was read ahead
+    private boolean pending;
+    private boolean previousTag;
+
+    // TAGS of the game, name and value one after another in tagText
+    private final StringBuilder tagText = new StringBuilder(256);
+    private int[] tagBounds = new int[3 * 16];
+    private int tagCount;
+
+    // MOVES of the game
+    private int[] moves = new int[256];
+    private int moveCount;
+    private String result;
+    private long gameOffset;
+    private long gameLine;
+
+    // MOVETEXT STATE, comments and variations may span lines
+    private boolean inComment;
+    private int variationDepth;
+    private String error;
+
+    private final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+    private final AsciiView token = new AsciiView();
+
+    public PgnReader(Path file) throws IOException {
+        this(file, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the games starting in the byte range {@code [from, to)} of the
+     * file. The last game is read to its end even past {@code to}, so
+     * splitting a file at any offsets reads every game exactly once.
+     */
+    public PgnReader(Path file, long from, long to) throws IOException {
+        lines = new MappedLines(file, from, to);
+        end = to;
+        previousTag = lines.previousFirst() == '[';
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Replays the next game of the file on {@code position}. Returns false
+     * when there is none left. Throws an IllegalArgumentException naming the
+     * offset of the game when it holds an illegal move or a malformed FEN tag;
+     * the reader then moves on to the next game.
+     */
+    public boolean next(Position position) throws IOException {
+        // Find the first tag line of the next game
+        while (!pending) {
+            if (!lines.next()) {
+                return false;
+            }
+            boolean tag = isTag();
+            pending = tag && !previousTag;
+            previousTag = tag;
+        }
+        if (lines.lineOffset >= end) {
+            return false;
+        }
+        pending = false;
+
+        tagText.setLength(0);
+        tagCount = 0;
+        moveCount = 0;
+        result = null;
+        gameOffset = lines.lineOffset;
+        gameLine = lines.lineNumber;
+        inComment = false;
+        variationDepth = 0;
+        error = null;
+
+        boolean inTags = true;
+        while (true) {
+            boolean tag = isTag();
+            if (inTags && tag) {
+                readTag();
+            } else {
+                if (inTags) {
+                    inTags = false;
+                    setUp(position);
+                }
+                readMoves(position);
+            }
+
+            previousTag = tag;
+            if (!lines.next()) {
+                break;
+            }
+            if (isTag() && !previousTag) {
+                pending = true;
+                break;
+            }
+        }
+        if (inTags) {
+            setUp(position);
+        }
+
+        if (error != null) {
+            throw new IllegalArgumentException("Game at byte " + gameOffset + ": " + error);
+        }
+        if (listener != null) {
+            listener.game(this, position);
+        }
+        return true;
+    }
+
+    private boolean isTag() {
+        return lines.start < lines.end && lines.window.get(lines.start) == '[';
+    }
+
+    private void readTag() {
+        MappedByteBuffer window = lines.window;
+        int i = lines.start + 1;
+        int lineEnd = lines.end;
+        while (i < lineEnd && window.get(i) == ' ') {
+            i++;
+        }
+
+        int nameStart = tagText.length();
+        while (i < lineEnd && window.get(i) != ' ' && window.get(i) != '"' && window.get(i) != ']') {
+            tagText.append((char) (window.get(i++) & 0xFF));
+        }
+        while (i < lineEnd && window.get(i) == ' ') {
+            i++;
+        }
+        if (i == lineEnd || window.get(i) != '"') {
+            tagText.setLength(nameStart);
+            return;
+        }
+
+        // The value is quoted, with backslash escapes
+        int valueStart = tagText.length();
+        for (i++; i < lineEnd && window.get(i) != '"'; i++) {
+            if (window.get(i) == '\\' && i + 1 < lineEnd) {
+                i++;
+            }
+            tagText.append((char) (window.get(i) & 0xFF));
+        }
+
+        if (3 * tagCount + 3 > tagBounds.length) {
+            tagBounds = Arrays.copyOf(tagBounds, tagBounds.length * 2);
+        }
+        tagBounds[3 * tagCount] = nameStart;
+        tagBounds[3 * tagCount + 1] = valueStart;
+        tagBounds[3 * tagCount + 2] = tagText.length();
+        tagCount++;
+    }
+
+    private void setUp(Position position) {
+        int fen = findTag("FEN");
+        if (fen < 0) {
+            Fen.load(position, Fen.START);
+            return;
+        }
+
+        try {
+            Fen.load(position, tagText, tagBounds[3 * fen + 1], tagBounds[3 * fen + 2]);
+        } catch (IllegalArgumentException e) {
+            error = e.getMessage();
+        }
+    }
+
+    private void readMoves(Position position) {
+        MappedByteBuffer window = lines.window;
+        int i = lines.start;
+        int lineEnd = lines.end;
+
+        // A line starting with % is an escape for other programs
+        if (!inComment && i < lineEnd && window.get(i) == '%') {
+            return;
+        }
+
+        while (i < lineEnd) {
+            byte c = window.get(i);
+            if (inComment) {
+                inComment = c != '}';
+                i++;
+            } else if (c == ' ' || c == '\t') {
+                i++;
+            } else if (c == '{') {
+                inComment = true;
+                i++;
+            } else if (c == ';') {
+                return;
+            } else if (c == '(') {
+                variationDepth++;
+                i++;
+            } else if (c == ')') {
+                variationDepth = Math.max(0, variationDepth - 1);
+                i++;
+            } else {
+                int tokenEnd = i;
+                while (tokenEnd < lineEnd && !isDelimiter(window.get(tokenEnd))) {
+                    tokenEnd++;
+                }
+                if (variationDepth == 0 && result == null) {
+                    readToken(position, window, i, tokenEnd);
+                }
+                i = tokenEnd;
+            }
+        }
+    }
+
+    private static boolean isDelimiter(byte c) {
+        return c == ' ' || c == '\t' || c == '{' || c == '}' || c == '(' || c == ')' || c == ';';
+    }
+
+    private void readToken(Position position, MappedByteBuffer window, int start, int tokenEnd) {
+        byte first = window.get(start);
+
+        // NAGS, ANNOTATIONS AND RESULTS
+        if (first == '$' || first == '!' || first == '?') {
+            return;
+        }
+        if (first == '*') {
+            result = UNKNOWN;
+            return;
+        }
+        if (matches(window, start, tokenEnd, WHITE_WINS)) {
+            result = WHITE_WINS;
+            return;
+        }
+        if (matches(window, start, tokenEnd, BLACK_WINS)) {
+            result = BLACK_WINS;
+            return;
+        }
+        if (matches(window, start, tokenEnd, DRAW)) {
+            result = DRAW;
+            return;
+        }
+
+        // MOVE NUMBERS, also glued to the move as in 1.e4, but not 0-0
+        if (first != '0' || tokenEnd - start < 2 || window.get(start + 1) != '-') {
+            while (start < tokenEnd && window.get(start) >= '0' && window.get(start) <= '9') {
+                start++;
+            }
+            while (start < tokenEnd && window.get(start) == '.') {
+                start++;
+            }
+            if (start == tokenEnd) {
+                return;
+            }
+        }
+
+        if (error != null) {
+            return;
+        }
+        token.set(window, start, tokenEnd);
+        int move = San.parse(position, token, 0, token.length(), buffer);
+        if (move == Move.NONE) {
+            error = "Illegal move " + token + " after " + moveCount + " plies";
+            return;
+        }
+
+        if (listener != null) {
+            listener.move(position, move);
+        }
+        position.makeMove(move);
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, moveCount * 2);
+        }
+        moves[moveCount++] = move;
+    }
+
+    private static boolean matches(MappedByteBuffer window, int start, int end, String text) {
+        if (end - start != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (window.get(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int findTag(String name) {
+        for (int tag = 0; tag < tagCount; tag++) {
+            int nameStart = tagBounds[3 * tag];
+            int nameEnd = tagBounds[3 * tag + 1];
+            if (nameEnd - nameStart != name.length()) {
+                continue;
+            }
+            int i = 0;
+            while (i < name.length() && tagText.charAt(nameStart + i) == name.charAt(i)) {
+                i++;
+            }
+            if (i == name.length()) {
+                return tag;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value of the tag {@code name} of the last game read, or null
+     * when the game has no such tag.
+     */
+    public String getTag(String name) {
+        int tag = findTag(name);
+        return tag < 0 ? null : tagText.substring(tagBounds[3 * tag + 1], tagBounds[3 * tag + 2]);
+    }
+
+    /**
+     * Returns the result that ends the movetext of the last game read, one of
+     * the result constants, or null when the movetext has none.
+     */
+    public String getResult() {
+        return result;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Returns the file offset of the first byte of the last game read.
+     */
+    public long getOffset() {
+        return gameOffset;
+    }
+
+    /**
+     * Returns the number of the line the last game read starts on, counted
+     * from the start of the range of this reader.
+     */
+    public long getLineNumber() {
+        return gameLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lines.close();
+    }
+}
@@ -0,0 +1,158 @@
+package com.kern.Notation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.kern.Logic.Position;
+
+/**
+ * The PgnReplayer class replays all games of a PGN file in parallel.
+ *
+ * <p>
+ * The file is split into byte ranges of at most {@link #CHUNK_SIZE} bytes on
+ * a fork-join pool, and every range is read by its own {@link PgnReader}
+ * with its own Position. A reader takes the games that start in its range,
+ * so the ranges need not be cut at game boundaries and no game is read twice.
+ * Since the file is memory-mapped, the threads share the page cache of the
+ * operating system and nothing is copied between them.
+ * </p>
+ *
+ * <p>
+ * The listener sees the moves and games of all ranges, on the threads of the
+ * pool, so it must be thread-safe. Games with an illegal move are counted and
+ * skipped.
+ * </p>
+ */
+public final class PgnReplayer {
+    // Ranges up to this size are read by one task
+    public static final long CHUNK_SIZE = 4L << 20;
+
+    /**
+     * The Statistics class holds the outcome of one replay.
+     */
+    public static class Statistics {
+        public final long games;
+        public final long invalidGames;
+        public final long plies;
+        public final long bytes;
+        public final long timeMillis;
+        public final String firstError;
+
+        public Statistics(long games, long invalidGames, long plies, long bytes, long timeMillis, String firstError) {
+            this.games = games;
+            this.invalidGames = invalidGames;
+            this.plies = plies;
+            this.bytes = bytes;
+            this.timeMillis = timeMillis;
+            this.firstError = firstError;
+        }
+
+        public long gamesPerSecond() {
+            return (games + invalidGames) * 1000 / Math.max(1, timeMillis);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append("games ").append(games)
+                    .append(" invalid ").append(invalidGames)
+                    .append(" plies ").append(plies)
+                    .append(" bytes ").append(bytes)
+                    .append(" time ").append(timeMillis)
+                    .append(" games/s ").append(gamesPerSecond());
+            if (firstError != null) {
+                text.append(" first error: ").append(firstError);
+            }
+            return text.toString();
+        }
+    }
+
+    private PgnReplayer() {
+    }
+
+    public static Statistics replay(Path file, PgnReader.Listener listener) throws IOException {
+        return replay(file, ForkJoinPool.commonPool(), listener);
+    }
+
+    public static Statistics replay(Path file, ForkJoinPool pool, PgnReader.Listener listener) throws IOException {
+        long startTime = System.nanoTime();
+        long size = Files.size(file);
+
+        Chunk result;
+        try {
+            result = pool.invoke(new Chunk(file, 0, size, listener));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new Statistics(result.games, result.invalidGames, result.plies, size,
+                (System.nanoTime() - startTime) / 1_000_000, result.firstError);
+    }
+
+    /**
+     * One byte range of the file; after it ran, also the counts of its games.
+     */
+    private static final class Chunk extends RecursiveTask<Chunk> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path file;
+        private final long from;
+        private final long to;
+        private final PgnReader.Listener listener;
+
+        long games;
+        long invalidGames;
+        long plies;
+        String firstError;
+
+        Chunk(Path file, long from, long to, PgnReader.Listener listener) {
+            this.file = file;
+            this.from = from;
+            this.to = to;
+            this.listener = listener;
+        }
+
+        @Override
+        protected Chunk compute() {
+            if (to - from > CHUNK_SIZE) {
+                long middle = from + (to - from) / 2;
+                Chunk first = new Chunk(file, from, middle, listener);
+                Chunk second = new Chunk(file, middle, to, listener);
+                second.fork();
+                first.compute();
+                second.join();
+
+                games = first.games + second.games;
+                invalidGames = first.invalidGames + second.invalidGames;
+                plies = first.plies + second.plies;
+                firstError = first.firstError != null ? first.firstError : second.firstError;
+                return this;
+            }
+
+            try (PgnReader reader = new PgnReader(file, from, to)) {
+                reader.setListener(listener);
+                Position position = new Position();
+                while (true) {
+                    try {
+                        if (!reader.next(position)) {
+                            break;
+                        }
+                        games++;
+                        plies += reader.getMoveCount();
+                    } catch (IllegalArgumentException e) {
+                        invalidGames++;
+                        if (firstError == null) {
+                            firstError = e.getMessage();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.kern.Notation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.kern.Logic.Attacks;
+import com.kern.Logic.Move;
+import com.kern.Logic.MoveGenerator;
+import com.kern.Logic.Position;
+
+/**
+ * The PolyglotBook class looks up opening moves in a Polyglot book.
+ *
+ * <p>
+ * A Polyglot {@code .bin} book is a list of 16-byte big-endian entries
+ * sorted by key: the Polyglot hash of a position (8 bytes), a move (2 bytes),
+ * its weight (2 bytes) and 4 bytes of learning data that are ignored. The
+ * Polyglot hash is not the {@link com.kern.Logic.Zobrist} key of a Position:
+ * it uses the fixed Random64 numbers of the format, which are read from the
+ * resource {@link #RANDOM_RESOURCE}.
+ * </p>
+ *
+ * <p>
+ * The book is memory-mapped and searched in place with a binary search over
+ * the entries, so opening it reads nothing and a probe touches about
+ * {@code log2(entries)} pages that stay in the page cache of the operating
+ * system. A book is immutable once opened and may be probed from any number
+ * of threads at once; a probe does not allocate.
+ * </p>
+ */
+public final class PolyglotBook implements Closeable {
+    /**
+     * The classpath resource holding the 781 Random64 numbers of the Polyglot
+     * format as hexadecimal {@code 0x} literals, as in the {@code Random64}
+     * array of the Polyglot sources.
+     */
+    public static final String RANDOM_RESOURCE = "/polyglot/random64.txt";
+
+    /**
+     * The Polyglot hash of the start position, which the Random64 numbers are
+     * checked against when they are read.
+     */
+    public static final long START_KEY = 0x463B96181691FC9CL;
+
+    private static final int ENTRY_SIZE = 16;
+
+    // Mapped buffers hold at most 2 GB, so a book is mapped in segments
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    // Offsets into the Random64 numbers
+    private static final int CASTLING_OFFSET = 768;
+    private static final int EN_PASSANT_OFFSET = 772;
+    private static final int TURN_OFFSET = 780;
+
+    // Polyglot piece kind of every piece type, White is kind + 1
+    private static final int[] KINDS = { 0, 10, 8, 2, 4, 6 };
+
+    // Polyglot promotion piece to type
+    private static final int[] PROMOTIONS = { 0, Position.KNIGHT, Position.BISHOP, Position.ROOK, Position.QUEEN };
+
+    private static volatile long[] random;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long entries;
+
+    private final ThreadLocal<int[]> buffers = ThreadLocal.withInitial(() -> new int[MoveGenerator.MAX_MOVES]);
+
+    private PolyglotBook(FileChannel channel) throws IOException {
+        this.channel = channel;
+        entries = channel.size() / ENTRY_SIZE;
+
+        int count = (int) ((entries + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = ((long) i << SEGMENT_SHIFT) * ENTRY_SIZE;
+            long length = Math.min(entries * ENTRY_SIZE - start, (SEGMENT_MASK + 1) * ENTRY_SIZE);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        }
+    }
+
+    public static PolyglotBook open(Path file) throws IOException {
+        randomNumbers();
+        return new PolyglotBook(FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    private static long[] randomNumbers() {
+        long[] numbers = random;
+        if (numbers == null) {
+            numbers = readRandomNumbers();
+            random = numbers;
+        }
+        return numbers;
+    }
+
+    private static long[] readRandomNumbers() {
+        String text;
+        try (InputStream input = PolyglotBook.class.getResourceAsStream(RANDOM_RESOURCE)) {
+            if (input == null) {
+                throw new IllegalStateException("Missing resource " + RANDOM_RESOURCE
+                        + ": Polyglot books need the 781 Random64 numbers of the format");
+            }
+            text = new String(input.readAllBytes(), StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + RANDOM_RESOURCE, e);
+        }
+
+        long[] numbers = new long[TURN_OFFSET + 1];
+        Matcher matcher = Pattern.compile("0[xX]([0-9A-Fa-f]{16})").matcher(text);
+        int count = 0;
+        while (matcher.find()) {
+            if (count == numbers.length) {
+                count++;
+                break;
+            }
+            numbers[count++] = Long.parseUnsignedLong(matcher.group(1), 16);
+        }
+        if (count != numbers.length) {
+            throw new IllegalStateException(RANDOM_RESOURCE + " must hold exactly " + numbers.length
+                    + " numbers");
+        }
+        if (key(Fen.parse(Fen.START), numbers) != START_KEY) {
+            throw new IllegalStateException(RANDOM_RESOURCE + " does not hold the Random64 numbers of the format");
+        }
+        return numbers;
+    }
+
+    /**
+     * Returns the Polyglot hash of the position.
+     */
+    public static long key(Position position) {
+        return key(position, randomNumbers());
+    }
+
+    private static long key(Position position, long[] numbers) {
+        long key = 0;
+
+        for (int code = 0; code < 12; code++) {
+            int kind = KINDS[Position.type(code)] + (Position.color(code) == Position.WHITE ? 1 : 0);
+            for (long bits = position.pieces[code]; bits != 0; bits &= bits - 1) {
+                key ^= numbers[64 * kind + Long.numberOfTrailingZeros(bits)];
+            }
+        }
+
+        // The rights in the order K, Q, k, q, as the flags of Position
+        for (int right = 0; right < 4; right++) {
+            if ((position.castlingRights & (1 << right)) != 0) {
+                key ^= numbers[CASTLING_OFFSET + right];
+            }
+        }
+
+        // Only counts when a pawn can actually capture en passant
+        int us = position.sideToMove;
+        if (position.enPassantSquare >= 0
+                && (Attacks.PAWN[1 - us][position.enPassantSquare] & position.pieces(us, Position.PAWN)) != 0) {
+            key ^= numbers[EN_PASSANT_OFFSET + (position.enPassantSquare & 7)];
+        }
+
+        if (us == Position.WHITE) {
+            key ^= numbers[TURN_OFFSET];
+        }
+        return key;
+    }
+
+    public long size() {
+        return entries;
+    }
+
+    private MappedByteBuffer segment(long index) {
+        return segments[(int) (index >>> SEGMENT_SHIFT)];
+    }
+
+    private static int offset(long index) {
+        return (int) (index & SEGMENT_MASK) * ENTRY_SIZE;
+    }
+
+    private long keyAt(long index) {
+        return segment(index).getLong(offset(index));
+    }
+
+    /**
+     * Returns the index of the first entry with the key, or {@link #size()}
+     * when the book has none.
+     */
+    private long find(long key) {
+        long low = 0;
+        long high = entries;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low < entries && keyAt(low) == key ? low : entries;
+    }
+
+    /**
+     * Picks a book move for the position at random, weighted by the weights
+     * of the book, or returns {@link Move#NONE} when the position is not in
+     * the book.
+     */
+    public int probe(Position position) {
+        return probe(position, ThreadLocalRandom.current().nextLong(), buffers.get());
+    }
+
+    /**
+     * Picks a book move like {@link #probe(Position)}, with {@code random}
+     * choosing the move and {@code buffer} receiving the legal moves of the
+     * position. Equal values of {@code random} pick the same move.
+     */
+    public int probe(Position position, long random, int[] buffer) {
+        long key = key(position);
+        long first = find(key);
+        if (first == entries) {
+            return Move.NONE;
+        }
+
+        // Keys of another position may collide, so only legal moves count
+        int count = MoveGenerator.generate(position, buffer);
+        long total = 0;
+        for (long index = first; index < entries && keyAt(index) == key; index++) {
+            if (legalMove(index, buffer, count) != Move.NONE) {
+                total += weightAt(index);
+            }
+        }
+        if (total == 0) {
+            return Move.NONE;
+        }
+
+        long pick = Long.remainderUnsigned(random, total);
+        for (long index = first; ; index++) {
+            int move = legalMove(index, buffer, count);
+            if (move == Move.NONE) {
+                continue;
+            }
+            pick -= weightAt(index);
+            if (pick < 0) {
+                return move;
+            }
+        }
+    }
+
+    private int weightAt(long index) {
+        return segment(index).getShort(offset(index) + 10) & 0xFFFF;
+    }
+
+    /**
+     * Returns the legal move of the entry, or {@link Move#NONE} when the book
+     * move is not among the {@code count} legal moves of {@code buffer}.
+     */
+    private int legalMove(long index, int[] buffer, int count) {
+        int bookMove = segment(index).getShort(offset(index) + 8) & 0xFFFF;
+        int to = bookMove & 63;
+        int from = (bookMove >>> 6) & 63;
+        int promotion = PROMOTIONS[Math.min(4, (bookMove >>> 12) & 7)];
+
+        for (int i = 0; i < count; i++) {
+            int move = buffer[i];
+            if (Move.from(move) != from) {
+                continue;
+            }
+
+            // Polyglot writes castling as the king taking its own rook
+            int target = Move.to(move);
+            if (Move.isCastling(move)) {
+                target = (target & 7) == 6 ? target + 1 : target - 2;
+            }
+            if (target == to && (Move.isPromotion(move) ? Move.promotion(move) : 0) == promotion) {
+                return move;
+            }
+        }
+        return Move.NONE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
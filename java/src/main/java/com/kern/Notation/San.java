@@ -0,0 +1,213 @@
+package com.kern.Notation;
+
+import com.kern.Logic.Move;
+import com.kern.Logic.MoveGenerator;
+import com.kern.Logic.Position;
+
+/**
+ * The San class reads and writes moves in Standard Algebraic Notation.
+ *
+ * <p>
+ * A SAN move names the moving piece and its target square, for example
+ * {@code Nf3}, {@code exd5}, {@code e8=Q} or {@code O-O}, and adds the file
+ * or rank of the origin only when two pieces of the same kind could reach the
+ * target. It is therefore only meaningful together with a position: a move is
+ * read by matching it against the legal moves of the position, so a move
+ * that is read is always legal.
+ * </p>
+ *
+ * <p>
+ * The reader accepts the usual variants found in PGN files: check and
+ * annotation suffixes ({@code +}, {@code #}, {@code !}, {@code ?}),
+ * superfluous disambiguation, {@code 0-0} for castling and promotions without
+ * {@code =}. Like {@link Fen} it reads between two indexes of any
+ * {@link CharSequence} and does not allocate.
+ * </p>
+ */
+public final class San {
+    // Piece letters indexed by type, the pawn has none
+    private static final String LETTERS = " KQNBR";
+
+    private San() {
+    }
+
+    public static int parse(Position position, String san) {
+        return parse(position, san, 0, san.length(), new int[MoveGenerator.MAX_MOVES]);
+    }
+
+    /**
+     * Returns the legal move written in {@code text} between {@code start} and
+     * {@code end}, or {@link Move#NONE} when no legal move or more than one
+     * matches. {@code buffer} receives the legal moves of the position and
+     * needs {@link MoveGenerator#MAX_MOVES} entries.
+     */
+    public static int parse(Position position, CharSequence text, int start, int end, int[] buffer) {
+        while (end > start && isSuffix(text.charAt(end - 1))) {
+            end--;
+        }
+        if (end - start < 2) {
+            return Move.NONE;
+        }
+
+        // CASTLING
+        char first = text.charAt(start);
+        if (first == 'O' || first == '0') {
+            int length = end - start;
+            if (length == 3 && isCastling(text, start, 1, first)) {
+                return findCastling(position, 6, buffer);
+            }
+            if (length == 5 && isCastling(text, start, 2, first)) {
+                return findCastling(position, 2, buffer);
+            }
+            return Move.NONE;
+        }
+
+        int type = LETTERS.indexOf(first);
+        if (type > 0) {
+            start++;
+        } else {
+            type = Position.PAWN;
+        }
+
+        // PROMOTION, with or without the equal sign
+        int promotion = 0;
+        if (type == Position.PAWN) {
+            int promotionType = LETTERS.indexOf(text.charAt(end - 1));
+            if (promotionType > Position.KING) {
+                promotion = promotionType;
+                end--;
+                if (text.charAt(end - 1) == '=') {
+                    end--;
+                }
+            }
+        }
+
+        // TARGET SQUARE
+        if (end - start < 2) {
+            return Move.NONE;
+        }
+        int to = square(text.charAt(end - 2), text.charAt(end - 1));
+        if (to < 0) {
+            return Move.NONE;
+        }
+
+        // DISAMBIGUATION, the capture sign says nothing the moves do not know
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = start; i < end - 2; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if (c != 'x' && c != ':' && c != '-') {
+                return Move.NONE;
+            }
+        }
+
+        int count = MoveGenerator.generate(position, buffer);
+        int found = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = buffer[i];
+            int from = Move.from(move);
+            if (Move.to(move) != to || Position.type(position.pieceAt(from)) != type
+                    || fromFile >= 0 && (from & 7) != fromFile || fromRank >= 0 && (from >>> 3) != fromRank
+                    || (Move.isPromotion(move) ? Move.promotion(move) : 0) != promotion) {
+                continue;
+            }
+            if (found != Move.NONE) {
+                return Move.NONE;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    private static boolean isSuffix(char c) {
+        return c == '+' || c == '#' || c == '!' || c == '?';
+    }
+
+    private static boolean isCastling(CharSequence text, int start, int dashes, char letter) {
+        for (int i = 0; i < dashes; i++) {
+            if (text.charAt(start + 2 * i + 1) != '-' || text.charAt(start + 2 * i + 2) != letter) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int findCastling(Position position, int toFile, int[] buffer) {
+        int count = MoveGenerator.generate(position, buffer);
+        for (int i = 0; i < count; i++) {
+            if (Move.isCastling(buffer[i]) && (Move.to(buffer[i]) & 7) == toFile) {
+                return buffer[i];
+            }
+        }
+        return Move.NONE;
+    }
+
+    private static int square(char file, char rank) {
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            return -1;
+        }
+        return (rank - '1') * 8 + (file - 'a');
+    }
+
+    /**
+     * Returns the legal move {@code move} of the position in SAN, with a
+     * {@code +} or {@code #} when it gives check or mate.
+     */
+    public static String toString(Position position, int move) {
+        StringBuilder text = new StringBuilder(8);
+        int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int type = Position.type(position.pieceAt(from));
+
+        if (Move.isCastling(move)) {
+            text.append((to & 7) == 6 ? "O-O" : "O-O-O");
+        } else if (type == Position.PAWN) {
+            if (Move.isCapture(move)) {
+                text.append((char) ('a' + (from & 7))).append('x');
+            }
+            text.append(Move.squareName(to));
+            if (Move.isPromotion(move)) {
+                text.append('=').append(LETTERS.charAt(Move.promotion(move)));
+            }
+        } else {
+            text.append(LETTERS.charAt(type));
+
+            // Name the file, else the rank, else both when other pieces reach the target too
+            boolean ambiguous = false;
+            boolean sameFile = false;
+            boolean sameRank = false;
+            int count = MoveGenerator.generate(position, buffer);
+            for (int i = 0; i < count; i++) {
+                int other = Move.from(buffer[i]);
+                if (other != from && Move.to(buffer[i]) == to && Position.type(position.pieceAt(other)) == type) {
+                    ambiguous = true;
+                    sameFile |= (other & 7) == (from & 7);
+                    sameRank |= (other >>> 3) == (from >>> 3);
+                }
+            }
+            if (ambiguous && (!sameFile || sameRank)) {
+                text.append((char) ('a' + (from & 7)));
+            }
+            if (ambiguous && sameFile) {
+                text.append((char) ('1' + (from >>> 3)));
+            }
+
+            if (Move.isCapture(move)) {
+                text.append('x');
+            }
+            text.append(Move.squareName(to));
+        }
+
+        position.makeMove(move);
+        if (position.inCheck()) {
+            text.append(MoveGenerator.generate(position, buffer) == 0 ? '#' : '+');
+        }
+        position.unmakeMove(move);
+        return text.toString();
+    }
+}
@@ -1,6 +1,7 @@
 package com.kern.Piece;
 
-import com.kern.GUI.GamePanel;
+import com.kern.Logic.Attacks;
+import com.kern.Logic.Position;
 import com.kern.Logic.Type;
 
 public class Bishop extends Piece {
@@ -9,26 +10,16 @@ public class Bishop extends Piece {
         super(color, column, row);
 
         type = Type.BISHOP;
-
-        if (color == GamePanel.WHITE) {
-            image = getImage("/piece/white-bishop");
-        } else {
-            image = getImage("/piece/black-bishop");
-        }
     }
 
     @Override
-    public boolean canMove(int targetColumn, int targetRow) {
+    public boolean canMove(Position position, int targetColumn, int targetRow) {
         if (isWithinBoard(targetColumn, targetRow) && !isSameSequare(targetColumn, targetRow)) {
-            if (Math.abs(targetColumn - preColumn) == Math.abs(targetRow - preRow)) {
-                if (isValidSequare(targetColumn, targetRow)
-                        && !pieceIsOnDiagonalLine(targetColumn, targetRow)) {
-                    return true;
-                }
+            if (isAttacking(Attacks.bishop(getSquare(), position.occupied), targetColumn, targetRow)) {
+                return isValidSequare(position, targetColumn, targetRow);
             }
         }
         return false;
     }
 
-
 }
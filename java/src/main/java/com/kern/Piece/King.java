@@ -1,6 +1,8 @@
 package com.kern.Piece;
 
 import com.kern.GUI.GamePanel;
+import com.kern.Logic.Attacks;
+import com.kern.Logic.Position;
 import com.kern.Logic.Type;
 
 public class King extends Piece {
@@ -9,69 +11,52 @@ public class King extends Piece {
         super(color, column, row);
 
         type = Type.KING;
-
-        if (color == GamePanel.WHITE) {
-            image = getImage("/piece/white-king");
-        } else {
-            image = getImage("/piece/black-king");
-        }
     }
 
     @Override
-    public boolean canMove(int targetColumn, int targetRow) {
+    public boolean canMove(Position position, int targetColumn, int targetRow) {
         if (isWithinBoard(targetColumn, targetRow)) {
+            int from = getSquare();
+            int target = Position.square(targetColumn, targetRow);
 
             // MOVEMENT
-            if (Math.abs(targetColumn - preColumn) + Math.abs(targetRow - preRow) == 1 ||
-                    Math.abs(targetColumn - preColumn) * Math.abs(targetRow - preRow) == 1) {
-                if (isValidSequare(targetColumn, targetRow)) {
-                    for (Piece piece : GamePanel.simPieces) {
-                        if (piece.color != this.color
-                                && piece.canMove(targetColumn, targetRow)) {
-                            return false;
-                        }
-                    }
-                    return true;
+            if (isAttacking(Attacks.KING[from], targetColumn, targetRow)) {
+                if (isValidSequare(position, targetColumn, targetRow)) {
+                    return isSafe(position, target);
                 }
             }
 
             // CASTLING
-            if (isMoved == false) {
-                // King side
-                if (targetColumn == preColumn + 2
-                        && targetRow == preRow
-                        && pieceIsOnStraightLine(targetColumn, targetRow) == false) {
-                    for (Piece piece : GamePanel.simPieces) {
-                        if (piece.column == preColumn + 3
-                                && piece.row == preRow
-                                && piece.isMoved == false) {
-                            GamePanel.castlingPiece = piece;
-                            return true;
-                        }
-                    }
+            if (targetRow == preRow
+                    && Math.abs(targetColumn - preColumn) == 2
+                    && !isReachableByOponent(position, preColumn, preRow)) {
+                boolean kingSide = targetColumn > preColumn;
+                int right;
+                if (color == GamePanel.WHITE) {
+                    right = kingSide ? Position.WHITE_KING_SIDE : Position.WHITE_QUEEN_SIDE;
+                } else {
+                    right = kingSide ? Position.BLACK_KING_SIDE : Position.BLACK_QUEEN_SIDE;
                 }
+                int rookColumn = kingSide ? 7 : 0;
+                int passing = Position.square((preColumn + targetColumn) / 2, preRow);
 
-                // Queen side
-                if (targetColumn == preColumn - 2
-                        && targetRow == preRow
-                        && pieceIsOnStraightLine(targetColumn, targetRow) == false) {
-                    Piece p[] = new Piece[2];
-                    for (Piece piece : GamePanel.simPieces) {
-                        if (piece.column == preColumn - 3 && piece.row == preRow) {
-                            p[0] = piece;
-                        }
-                        if (piece.column == preColumn - 4 && piece.row == preRow) {
-                            p[1] = piece;
-                        }
-
-                        if (p[0] == null && p[1] != null && p[1].isMoved == false) {
-                            GamePanel.castlingPiece = p[1];
-                            return true;
-                        }
-                    }
+                if ((position.castlingRights & right) != 0
+                        && !position.isPathBlocked(from, Position.square(rookColumn, preRow))
+                        && isSafe(position, passing)
+                        && isSafe(position, target)) {
+                    return true;
                 }
             }
         }
         return false;
     }
+
+    // The king may stand on the square. The attack map of the position already
+    // looks through the king, for the other side lift it off the board here
+    private boolean isSafe(Position position, int square) {
+        if (color == position.sideToMove) {
+            return (position.dangerSquares() & Position.bit(square)) == 0;
+        }
+        return !position.isAttacked(square, 1 - color, position.occupied & ~Position.bit(getSquare()));
+    }
 }
@@ -1,6 +1,7 @@
 package com.kern.Piece;
 
-import com.kern.GUI.GamePanel;
+import com.kern.Logic.Attacks;
+import com.kern.Logic.Position;
 import com.kern.Logic.Type;
 
 public class Knight extends Piece {
@@ -9,21 +10,13 @@ public class Knight extends Piece {
         super(color, column, row);
 
         type = Type.KNIGHT;
-
-        if (color == GamePanel.WHITE) {
-            image = getImage("/piece/white-knight");
-        } else {
-            image = getImage("/piece/black-knight");
-        }
     }
 
     @Override
-    public boolean canMove(int targetColumn, int targetRow) {
-        if (isWithinBoard(targetColumn, targetRow)) {
-            if (Math.abs(targetColumn - preColumn) * Math.abs(targetRow - preRow) == 2) {
-                if (isValidSequare(targetColumn, targetRow)) {
-                    return true;
-                }
+    public boolean canMove(Position position, int targetColumn, int targetRow) {
+        if (isWithinBoard(targetColumn, targetRow) && !isSameSequare(targetColumn, targetRow)) {
+            if (isAttacking(Attacks.KNIGHT[getSquare()], targetColumn, targetRow)) {
+                return isValidSequare(position, targetColumn, targetRow);
             }
         }
         return false;
@@ -1,6 +1,8 @@
 package com.kern.Piece;
 
 import com.kern.GUI.GamePanel;
+import com.kern.Logic.Attacks;
+import com.kern.Logic.Position;
 import com.kern.Logic.Type;
 
 public class Pawn extends Piece {
@@ -9,62 +11,54 @@ public class Pawn extends Piece {
         super(color, column, row);
 
         type = Type.PAWN;
-
-        if (color == GamePanel.WHITE) {
-            image = getImage("/piece/white-pawn");
-        } else {
-            image = getImage("/piece/black-pawn");
-        }
     }
 
     @Override
-    public boolean canMove(int targetColumn, int targetRow) {
+    public boolean canMove(Position position, int targetColumn, int targetRow) {
         if (isWithinBoard(targetColumn, targetRow)
                 && !isSameSequare(targetColumn, targetRow)) {
 
-            // Define the move value based on its color
+            // Define the move value and the starting row based on its color
             int moveValue;
+            int startRow;
             if (color == GamePanel.WHITE) {
                 moveValue = -1;
+                startRow = 6;
             } else {
                 moveValue = 1;
+                startRow = 1;
             }
 
-            // Check the hitting piece
-            hittinPiece = getHittingPiece(targetColumn, targetRow);
+            int target = Position.square(targetColumn, targetRow);
+            int code = position.pieceAt(target);
 
             // Move 1 square
             if (targetColumn == preColumn
                     && targetRow == preRow + moveValue
-                    && hittinPiece == null) {
+                    && code == Position.EMPTY) {
                 return true;
             }
 
             // Move 2 square
             if (targetColumn == preColumn
                     && targetRow == preRow + moveValue * 2
-                    && hittinPiece == null
-                    && isMoved == false
-                    && pieceIsOnStraightLine(targetColumn, targetRow) == false) {
+                    && code == Position.EMPTY
+                    && preRow == startRow
+                    && pieceIsOnStraightLine(position, targetColumn, targetRow) == false) {
                 return true;
             }
 
             // Capture diagonaly
-            if (Math.abs(targetColumn - preColumn) == 1
-                    && targetRow == preRow + moveValue
-                    && hittinPiece != null
-                    && hittinPiece.color != color) {
+            boolean isDiagonal = isAttacking(Attacks.PAWN[color][getSquare()], targetColumn, targetRow);
+            if (isDiagonal
+                    && code != Position.EMPTY
+                    && Position.color(code) != color) {
                 return true;
             }
 
             // En Passant
-            if (Math.abs(targetColumn - preColumn) == 1 && targetRow == preRow + moveValue) {
-                for (Piece piece : GamePanel.simPieces) {
-                    if (piece.column == targetColumn && piece.row == preRow && piece.isTwoStepped) {
-                        hittinPiece = piece;
-                        return true;
-                    }
-                }
+            if (isDiagonal && target == position.enPassantSquare) {
+                return true;
             }
         }
 
@@ -1,6 +1,7 @@
 package com.kern.Piece;
 
-import com.kern.GUI.GamePanel;
+import com.kern.Logic.Attacks;
+import com.kern.Logic.Position;
 import com.kern.Logic.Type;
 
 public class Rook extends Piece {
@@ -9,22 +10,13 @@ public class Rook extends Piece {
         super(color, column, row);
 
         type = Type.ROOK;
-
-        if (color == GamePanel.WHITE) {
-            image = getImage("/piece/white-rook");
-        } else {
-            image = getImage("/piece/black-rook");
-        }
     }
 
     @Override
-    public boolean canMove(int targetColumn, int targetRow) {
+    public boolean canMove(Position position, int targetColumn, int targetRow) {
         if (isWithinBoard(targetColumn, targetRow) && !isSameSequare(targetColumn, targetRow)) {
-            if (targetColumn == preColumn || targetRow == preRow) {
-                if (isValidSequare(targetColumn, targetRow)
-                        && !pieceIsOnStraightLine(targetColumn, targetRow)) {
-                    return true;
-                }
+            if (isAttacking(Attacks.rook(getSquare(), position.occupied), targetColumn, targetRow)) {
+                return isValidSequare(position, targetColumn, targetRow);
             }
         }
         return false;
@@ -0,0 +1,125 @@
+package com.kern.Piece;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.imageio.ImageIO;
+
+import com.kern.GUI.Board;
+
+/**
+ * The Sprites class holds the images of all pieces in one shared atlas.
+ *
+ * <p>
+ * The twelve piece images are decoded once, in parallel, and drawn into a
+ * single image of six columns (one per {@link com.kern.Logic.Type}) and two
+ * rows (White, then Black), already scaled to {@link Board#SQUARE_SIZE}.
+ * Drawing a piece copies its cell of the atlas without scaling or converting
+ * pixels, and no image is read again after startup.
+ * </p>
+ *
+ * <p>
+ * {@link #load()} starts the decoding on background threads, so it can
+ * overlap with the creation of the window; the first piece drawn waits for it
+ * if it is not done yet. Once the screen is known, {@link #convert} copies the
+ * atlas into the format of the screen.
+ * </p>
+ */
+public final class Sprites {
+    private static final String[] COLORS = { "white", "black" };
+    private static final String[] TYPES = { "pawn", "king", "queen", "knight", "bishop", "rook" };
+
+    private static CompletableFuture<BufferedImage> loading;
+    private static volatile BufferedImage atlas;
+
+    private Sprites() {
+    }
+
+    /**
+     * Starts decoding the piece images in the background, the first call only.
+     */
+    public static synchronized CompletableFuture<BufferedImage> load() {
+        if (loading == null) {
+            List<CompletableFuture<BufferedImage>> images = new ArrayList<>(COLORS.length * TYPES.length);
+            for (int color = 0; color < COLORS.length; color++) {
+                for (int type = 0; type < TYPES.length; type++) {
+                    String path = "/piece/" + COLORS[color] + "-" + TYPES[type] + ".png";
+                    images.add(CompletableFuture.supplyAsync(() -> read(path)));
+                }
+            }
+
+            loading = CompletableFuture.allOf(images.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+                BufferedImage result = new BufferedImage(TYPES.length * Board.SQUARE_SIZE,
+                        COLORS.length * Board.SQUARE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+                Graphics2D g2d = result.createGraphics();
+                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+
+                for (int i = 0; i < images.size(); i++) {
+                    BufferedImage image = images.get(i).join();
+                    if (image != null) {
+                        g2d.drawImage(image, (i % TYPES.length) * Board.SQUARE_SIZE,
+                                (i / TYPES.length) * Board.SQUARE_SIZE, Board.SQUARE_SIZE, Board.SQUARE_SIZE, null);
+                    }
+                }
+                g2d.dispose();
+                return result;
+            });
+        }
+        return loading;
+    }
+
+    private static BufferedImage read(String path) {
+        try (InputStream input = Sprites.class.getResourceAsStream(path)) {
+            if (input == null) {
+                throw new IOException("Missing image " + path);
+            }
+            return ImageIO.read(input);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static BufferedImage atlas() {
+        BufferedImage image = atlas;
+        if (image == null) {
+            image = load().join();
+            atlas = image;
+        }
+        return image;
+    }
+
+    /**
+     * Copies the atlas into the image format of the given screen, so drawing it
+     * there needs no conversion.
+     */
+    public static void convert(GraphicsConfiguration config) {
+        BufferedImage source = atlas();
+        BufferedImage image = config.createCompatibleImage(source.getWidth(), source.getHeight(),
+                Transparency.TRANSLUCENT);
+
+        Graphics2D g2d = image.createGraphics();
+        g2d.setComposite(AlphaComposite.Src);
+        g2d.drawImage(source, 0, 0, null);
+        g2d.dispose();
+
+        atlas = image;
+    }
+
+    public static void draw(Graphics2D g2d, int color, int type, int x, int y) {
+        int sourceX = type * Board.SQUARE_SIZE;
+        int sourceY = color * Board.SQUARE_SIZE;
+
+        g2d.drawImage(atlas(), x, y, x + Board.SQUARE_SIZE, y + Board.SQUARE_SIZE,
+                sourceX, sourceY, sourceX + Board.SQUARE_SIZE, sourceY + Board.SQUARE_SIZE, null);
+    }
+}